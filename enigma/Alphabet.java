@@ -0,0 +1,261 @@
+package enigma;
+
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** An alphabet of encodable characters.  Provides a mapping from characters
+ *  to and from indices into the alphabet.  Both directions are a single
+ *  array load: characters are looked up in a dense table spanning their
+ *  range, except that a few characters scattered over a wide range (e.g.,
+ *  of Unicode) use a perfect hash, when one smaller than that table can
+ *  be found.
+ *  @author Daric Lim
+ */
+class Alphabet {
+
+    /** A new alphabet containing CHARS.  Character number #k has index
+     *  K (numbering from 0).  No character may be duplicated, and none
+     *  may be '(', ')', '*' or whitespace. */
+    Alphabet(String chars) {
+        this(chars.toCharArray(), true);
+    }
+
+    /** A new alphabet whose character #k is CHARS[K].  If CYCLESAFE,
+     *  reject the characters that cycle notation reserves. */
+    private Alphabet(char[] chars, boolean cycleSafe) {
+        if (chars.length == 0) {
+            throw error("Alphabet must not be empty");
+        }
+        if (chars.length > MAX_SIZE) {
+            throw error("Alphabet has more than %d characters", MAX_SIZE);
+        }
+        _chars = chars;
+        char min = Character.MAX_VALUE, max = Character.MIN_VALUE;
+        for (char c : _chars) {
+            if (cycleSafe && (c == '(' || c == ')' || c == '*'
+                              || Character.isWhitespace(c))) {
+                throw error("'%c' may not be in an alphabet", c);
+            }
+            min = (char) Math.min(min, c);
+            max = (char) Math.max(max, c);
+        }
+        int range = max - min + 1;
+        if (range > Math.max(DENSE_LIMIT, DENSE_FACTOR * _chars.length)
+            && buildHash((long) range * Character.BYTES)) {
+            _min = 0;
+            _index = null;
+        } else {
+            _min = min;
+            _index = new char[range];
+            for (int i = 0; i < _chars.length; i += 1) {
+                addDense(_chars[i], i);
+            }
+            _keys = null;
+            _values = null;
+        }
+    }
+
+    /** A default alphabet of all upper-case characters. */
+    Alphabet() {
+        this("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+    }
+
+    /** Returns the 256-symbol byte alphabet, in which the byte B has index
+     *  B & 0xFF (and is the character with that code).  It contains the
+     *  cycle-notation metacharacters, so permutations of it are built from
+     *  mapping tables rather than cycle strings. */
+    static Alphabet bytes() {
+        return BYTES;
+    }
+
+    /** Returns true iff I am the byte alphabet, so that indices and
+     *  unsigned byte values coincide. */
+    boolean isBytes() {
+        return this == BYTES;
+    }
+
+    /** Returns the size of the alphabet. */
+    int size() {
+        return _chars.length;
+    }
+
+    /** Returns true if CH is in this alphabet. */
+    boolean contains(char ch) {
+        return lookup(ch) >= 0;
+    }
+
+    /** Returns character number INDEX in the alphabet, where
+     *  0 <= INDEX < size(). */
+    char toChar(int index) {
+        if (index < 0 || index >= _chars.length) {
+            throw error("character index out of range");
+        }
+        return _chars[index];
+    }
+
+    /** Returns the index of character CH, which must be in the alphabet.
+     *  This is the inverse of toChar(). */
+    int toInt(char ch) {
+        int index = lookup(ch);
+        if (index < 0) {
+            throw error("character '%c' not in alphabet", ch);
+        }
+        return index;
+    }
+
+    /** Returns the number of bytes my lookup tables occupy. */
+    long tableBytes() {
+        if (_index != null) {
+            return (long) _index.length * Character.BYTES;
+        }
+        return (long) _keys.length * HASH_SLOT_BYTES;
+    }
+
+    /** Returns the indices of the characters of TEXT, in order.  All
+     *  must be in the alphabet. */
+    int[] toInts(String text) {
+        int[] result = new int[text.length()];
+        for (int i = 0; i < result.length; i += 1) {
+            int index = lookup(text.charAt(i));
+            if (index < 0) {
+                throw error("Contains characters not in alphabet");
+            }
+            result[i] = index;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Alphabet
+            && Arrays.equals(_chars, ((Alphabet) obj)._chars);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(_chars);
+    }
+
+    /** Returns the index of CH, or -1 if it is not in this alphabet. */
+    private int lookup(char ch) {
+        if (_index != null) {
+            int k = ch - _min;
+            if (k < 0 || k >= _index.length) {
+                return -1;
+            }
+            return _index[k] - 1;
+        }
+        int slot = (ch * _multiplier) >>> _shift;
+        return _keys[slot] == ch ? _values[slot] : -1;
+    }
+
+    /** Record CH as character number INDEX in the dense table. */
+    private void addDense(char ch, int index) {
+        if (_index[ch - _min] != 0) {
+            throw error("Alphabet has duplicate character '%c'", ch);
+        }
+        _index[ch - _min] = (char) (index + 1);
+    }
+
+    /** Fill in _keys, _values, _multiplier and _shift with a
+     *  collision-free multiplicative hash of _chars, growing the table
+     *  until one of the candidate multipliers works, and return true; or
+     *  return false if every table that works would take at least LIMIT
+     *  bytes. */
+    private boolean buildHash(long limit) {
+        int bits = 32 - Integer.numberOfLeadingZeros(2 * _chars.length - 1);
+        while ((1L << bits) * HASH_SLOT_BYTES < limit) {
+            for (int m = 0; m < HASH_MULTIPLIERS.length; m += 1) {
+                if (tryHash(HASH_MULTIPLIERS[m], bits)) {
+                    return true;
+                }
+            }
+            bits += 1;
+        }
+        return false;
+    }
+
+    /** Try to place _chars in a table of 2**BITS slots with MULTIPLIER
+     *  and no collisions, returning true on success. */
+    private boolean tryHash(int multiplier, int bits) {
+        int shift = 32 - bits;
+        char[] keys = new char[1 << bits];
+        int[] values = new int[1 << bits];
+        Arrays.fill(values, -1);
+        for (int i = 0; i < _chars.length; i += 1) {
+            char c = _chars[i];
+            int slot = (c * multiplier) >>> shift;
+            if (values[slot] >= 0) {
+                if (keys[slot] == c) {
+                    throw error("Alphabet has duplicate character '%c'", c);
+                }
+                return false;
+            }
+            keys[slot] = c;
+            values[slot] = i;
+        }
+        _keys = keys;
+        _values = values;
+        _multiplier = multiplier;
+        _shift = shift;
+        return true;
+    }
+
+    /** Number of symbols in the byte alphabet. */
+    static final int BYTE_SIZE = 256;
+
+    /** The byte alphabet. */
+    private static final Alphabet BYTES;
+    static {
+        char[] chars = new char[BYTE_SIZE];
+        for (int i = 0; i < BYTE_SIZE; i += 1) {
+            chars[i] = (char) i;
+        }
+        BYTES = new Alphabet(chars, false);
+    }
+
+    /** Largest number of characters an alphabet may hold. */
+    static final int MAX_SIZE = Character.MAX_VALUE;
+
+    /** Character ranges up to this span always use the dense table. */
+    private static final int DENSE_LIMIT = 4096;
+
+    /** Wider ranges use the dense table while at most this many slots
+     *  go to each character. */
+    private static final int DENSE_FACTOR = 8;
+
+    /** Bytes taken by each slot of the hash (its key and value). */
+    private static final int HASH_SLOT_BYTES =
+        Character.BYTES + Integer.BYTES;
+
+    /** Odd multipliers tried, in order, when building a perfect hash. */
+    private static final int[] HASH_MULTIPLIERS = {
+        0x9E3779B1, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F, 0x165667B1,
+    };
+
+    /** My characters, in index order. */
+    private final char[] _chars;
+
+    /** Smallest character covered by _index. */
+    private final char _min;
+
+    /** Dense table: _index[C - _min] is 1 + the index of C, or 0 if C is
+     *  not in this alphabet.  Null when the hash is in use. */
+    private final char[] _index;
+
+    /** Hash table keys, or null when _index is in use. */
+    private char[] _keys;
+
+    /** Index of the character in the corresponding slot of _keys, or -1
+     *  for an empty slot (whose key is left 0, so that misses on any
+     *  character, including '\0', find -1).  Null when _index is in
+     *  use. */
+    private int[] _values;
+
+    /** Hash multiplier for _keys. */
+    private int _multiplier;
+
+    /** Hash shift for _keys. */
+    private int _shift;
+}
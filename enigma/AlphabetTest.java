@@ -0,0 +1,144 @@
+package enigma;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Alphabet class.
+ *  @author Daric Lim
+ */
+public class AlphabetTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Check that ALPHA holds exactly the characters of CHARS, in order,
+     *  and rejects each of MISSES. */
+    private void checkLookup(String testId, Alphabet alpha, String chars,
+                             String misses) {
+        assertEquals(msg(testId, "size"), chars.length(), alpha.size());
+        for (int i = 0; i < chars.length(); i += 1) {
+            char c = chars.charAt(i);
+            assertTrue(msg(testId, "contains %d", i), alpha.contains(c));
+            assertEquals(msg(testId, "toInt %d", i), i, alpha.toInt(c));
+            assertEquals(msg(testId, "toChar %d", i), c, alpha.toChar(i));
+        }
+        for (int i = 0; i < misses.length(); i += 1) {
+            char c = misses.charAt(i);
+            assertFalse(msg(testId, "contains miss \\u%04x", (int) c),
+                        alpha.contains(c));
+            try {
+                alpha.toInt(c);
+                fail(msg(testId, "toInt miss \\u%04x", (int) c));
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    /** Return the span of the characters of CHARS, lowest to highest. */
+    private int range(String chars) {
+        char min = Character.MAX_VALUE, max = Character.MIN_VALUE;
+        for (int i = 0; i < chars.length(); i += 1) {
+            min = (char) Math.min(min, chars.charAt(i));
+            max = (char) Math.max(max, chars.charAt(i));
+        }
+        return max - min + 1;
+    }
+
+    @Test
+    public void denseTest() {
+        Alphabet alpha = new Alphabet(UPPER_STRING);
+        checkLookup("dense", alpha, UPPER_STRING, "\u0000@[a\uffff");
+        assertEquals(msg("dense", "table size"),
+                     UPPER_STRING.length() * Character.BYTES,
+                     alpha.tableBytes());
+    }
+
+    @Test
+    public void hashTest() {
+        String chars = "\u0000A\u4e00\u00e9\uffff\u8000\u0101";
+        Alphabet alpha = new Alphabet(chars);
+        checkLookup("hash", alpha, chars, "\u0001B\u4e01\u00e8\ufffe\u7fff");
+        assertTrue(msg("hash", "table of %d bytes", alpha.tableBytes()),
+                   alpha.tableBytes() < range(chars));
+        String noNul = "A\u4e00\u00e9\uffff\u8000";
+        checkLookup("hashNoNul", new Alphabet(noNul), noNul,
+                    "\u0000\u0001B\u0101");
+    }
+
+    @Test
+    public void scatteredTest() {
+        for (int n : new int[] { 500, 2000, 8000 }) {
+            char[] chars = new char[n];
+            char[] misses = new char[n];
+            int stride = (Character.MAX_VALUE - 0x100) / n;
+            for (int i = 0; i < n; i += 1) {
+                chars[i] = (char) (0x100 + i * stride);
+                while (Character.isWhitespace(chars[i])) {
+                    chars[i] += 1;
+                }
+                misses[i] = (char) (chars[i] + 1);
+            }
+            String s = new String(chars);
+            Alphabet alpha = new Alphabet(s);
+            String testId = "scattered" + n;
+            checkLookup(testId, alpha, s, "\u0000A" + new String(misses));
+            assertTrue(msg(testId, "table of %d bytes", alpha.tableBytes()),
+                       alpha.tableBytes()
+                       <= (long) range(s) * Character.BYTES);
+        }
+    }
+
+    @Test
+    public void randomScatteredTest() {
+        Random random = new Random(3);
+        for (int n : new int[] { 500, 2000 }) {
+            StringBuilder chars = new StringBuilder();
+            boolean[] used = new boolean[Character.MAX_VALUE + 1];
+            while (chars.length() < n) {
+                char c = (char) (1 + random.nextInt(Character.MAX_VALUE));
+                if (!used[c] && !Character.isWhitespace(c) && c != '('
+                    && c != ')' && c != '*') {
+                    used[c] = true;
+                    chars.append(c);
+                }
+            }
+            String s = chars.toString();
+            Alphabet alpha = new Alphabet(s);
+            String testId = "randomScattered" + n;
+            checkLookup(testId, alpha, s, "\u0000");
+            assertTrue(msg(testId, "table of %d bytes", alpha.tableBytes()),
+                       alpha.tableBytes()
+                       <= (long) range(s) * Character.BYTES);
+        }
+    }
+
+    @Test
+    public void toIntsTest() {
+        assertArrayEquals(new int[] { 7, 4, 11, 11, 14 },
+                          UPPER.toInts("HELLO"));
+        assertArrayEquals(new int[0], UPPER.toInts(""));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void toIntsMissTest() {
+        UPPER.toInts("HELLO WORLD");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void denseDuplicateTest() {
+        new Alphabet("ABCA");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void hashDuplicateTest() {
+        new Alphabet("\u0001\uffff\u4e00\uffff");
+    }
+}
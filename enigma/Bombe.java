@@ -0,0 +1,301 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static enigma.EnigmaException.*;
+
+/** A crib-driven search for rotor orders and start positions, after the
+ *  Turing-Welchman Bombe.  A crib (known plaintext at a known place in
+ *  the message) pairs plaintext letter P with ciphertext letter C at
+ *  keypress K, and since the plugboard S sits on both sides of the
+ *  rotors, S(C) = R_K(S(P)), where R_K is the rotors' substitution at
+ *  keypress K.  These pairs form the menu: a graph on letters with one
+ *  edge per crib letter.  For each rotor order and start position, the
+ *  Bombe supposes that the menu's most connected letter T is plugged to
+ *  each letter X in turn and follows the implications of the menu
+ *  edges, together with S(A) = B implying S(B) = A (Welchman's diagonal
+ *  board), until they reach a fixed point or a contradiction (some
+ *  letter plugged to two others).  Each supposition that survives is a
+ *  stop.
+ *  The implications are kept as one bitmask of possible partners per
+ *  letter.  Each rotor order is searched by its own task on a
+ *  ForkJoinPool, reusing one machine and one set of tables for all of
+ *  its start positions.
+ *  @author Daric Lim
+ */
+class Bombe {
+
+    /** A Bombe for the crib CRIB, which is the plaintext of CIPHERTEXT
+     *  starting at index OFFSET, using the catalog and rings of MACHINE
+     *  (whose plugboard is ignored).  MACHINE is copied and not
+     *  changed. */
+    Bombe(Machine machine, String ciphertext, String crib, int offset) {
+        _alphabet = machine.alphabet();
+        _size = _alphabet.size();
+        if (_size > Integer.SIZE) {
+            throw error("The Bombe needs an alphabet of at most %d symbols",
+                        Integer.SIZE);
+        }
+        if (offset < 0 || crib.length() == 0
+            || offset + crib.length() > ciphertext.length()) {
+            throw error("Crib does not fit in the message");
+        }
+        _machine = machine.copy();
+        _machine.setPlugboard(new Permutation("", _alphabet));
+        _offset = offset;
+        int len = crib.length();
+        _plain = _alphabet.toInts(crib);
+        _cipher = _alphabet.toInts(ciphertext.substring(offset,
+                                                        offset + len));
+        int[] degree = new int[_size];
+        for (int i = 0; i < len; i += 1) {
+            if (_plain[i] == _cipher[i]) {
+                throw error("Crib letter '%c' cannot encrypt to itself",
+                            crib.charAt(i));
+            }
+            degree[_plain[i]] += 1;
+            degree[_cipher[i]] += 1;
+        }
+        _edges = new int[_size][];
+        int test = 0;
+        for (int letter = 0; letter < _size; letter += 1) {
+            _edges[letter] = new int[degree[letter]];
+            if (degree[letter] > degree[test]) {
+                test = letter;
+            }
+        }
+        _test = test;
+        Arrays.fill(degree, 0);
+        for (int i = 0; i < len; i += 1) {
+            _edges[_plain[i]][degree[_plain[i]]] = i;
+            degree[_plain[i]] += 1;
+            _edges[_cipher[i]][degree[_cipher[i]]] = i;
+            degree[_cipher[i]] += 1;
+        }
+    }
+
+    /** Returns the stops of all start positions of the rotor orders
+     *  ORDERS (each as for Machine.insertRotors), searching each order
+     *  in its own task on POOL.  Stops are listed by order, then by start
+     *  position, then by the letter supposed plugged to the test
+     *  letter. */
+    List<Stop> run(String[][] orders, ForkJoinPool pool) {
+        List<Drum> drums = new ArrayList<>();
+        for (String[] order : orders) {
+            _machine.copy().insertRotors(order);
+            drums.add(new Drum(order.clone()));
+        }
+        List<Stop> result = new ArrayList<>();
+        for (Drum drum : pool.invoke(new Drums(drums))) {
+            result.addAll(drum.join());
+        }
+        return result;
+    }
+
+    /** Return the menu letter whose plug the Bombe supposes. */
+    char testLetter() {
+        return _alphabet.toChar(_test);
+    }
+
+    /** A surviving supposition. */
+    static class Stop {
+
+        /** A stop for rotors ROTORS at setting SETTING, with the plugs
+         *  implied by the surviving supposition given in cycle notation
+         *  as PLUGS. */
+        Stop(String[] rotors, String setting, String plugs) {
+            _rotors = rotors;
+            _setting = setting;
+            _plugs = plugs;
+        }
+
+        /** Return the names of my rotors, reflector first. */
+        String[] rotors() {
+            return _rotors.clone();
+        }
+
+        /** Return my rotor setting, as for Machine.setRotors. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return the plugs implied at this stop, as cycles for a
+         *  Permutation (letters plugged to themselves are left out).  Menu
+         *  letters not connected to the test letter are not known. */
+        String plugs() {
+            return _plugs;
+        }
+
+        @Override
+        public String toString() {
+            return String.join(" ", _rotors) + " " + _setting + " " + _plugs;
+        }
+
+        /** My rotor names. */
+        private final String[] _rotors;
+
+        /** My setting. */
+        private final String _setting;
+
+        /** My implied plugs. */
+        private final String _plugs;
+    }
+
+    /** A task that starts one Drum per rotor order and returns them. */
+    private static class Drums extends RecursiveTask<List<Drum>> {
+
+        /** Runs DRUMS. */
+        Drums(List<Drum> drums) {
+            _drums = drums;
+        }
+
+        @Override
+        protected List<Drum> compute() {
+            invokeAll(_drums);
+            return _drums;
+        }
+
+        /** The tasks I run. */
+        private final List<Drum> _drums;
+    }
+
+    /** A task that searches all start positions of one rotor order. */
+    private class Drum extends RecursiveTask<List<Stop>> {
+
+        /** Searches rotor order ORDER. */
+        Drum(String[] order) {
+            _order = order;
+        }
+
+        @Override
+        protected List<Stop> compute() {
+            List<Stop> stops = new ArrayList<>();
+            Machine machine = _machine.copy();
+            machine.insertRotors(_order);
+            int[] setting = new int[_order.length - 1];
+            int[] free = new int[setting.length];
+            int numFree = 0;
+            for (int i = 0; i < setting.length; i += 1) {
+                if (!machine.reflecting(i + 1)) {
+                    free[numFree] = i;
+                    numFree += 1;
+                }
+            }
+            int[][] rows = new int[_plain.length][_size];
+            int[] plugs = new int[_size];
+            int[] queue = new int[_size * _size];
+            while (true) {
+                machine.setRotors(setting);
+                for (int k = 0; k < _offset; k += 1) {
+                    machine.step();
+                }
+                for (int i = 0; i < rows.length; i += 1) {
+                    machine.step();
+                    machine.substituteAll(rows[i]);
+                }
+                for (int x = 0; x < _size; x += 1) {
+                    if (close(x, rows, plugs, queue)) {
+                        stops.add(stop(setting, plugs));
+                    }
+                }
+                int j = numFree - 1;
+                while (j >= 0 && setting[free[j]] == _size - 1) {
+                    setting[free[j]] = 0;
+                    j -= 1;
+                }
+                if (j < 0) {
+                    return stops;
+                }
+                setting[free[j]] += 1;
+            }
+        }
+
+        /** Return the stop at SETTING whose implied plugs are PLUGS. */
+        private Stop stop(int[] setting, int[] plugs) {
+            char[] chars = new char[setting.length];
+            for (int i = 0; i < setting.length; i += 1) {
+                chars[i] = _alphabet.toChar(setting[i]);
+            }
+            StringBuilder cycles = new StringBuilder();
+            for (int a = 0; a < _size; a += 1) {
+                int b = Integer.numberOfTrailingZeros(plugs[a]);
+                if (plugs[a] != 0 && a < b) {
+                    if (cycles.length() > 0) {
+                        cycles.append(' ');
+                    }
+                    cycles.append('(').append(_alphabet.toChar(a))
+                        .append(_alphabet.toChar(b)).append(')');
+                }
+            }
+            return new Stop(_order.clone(), new String(chars),
+                            cycles.toString());
+        }
+
+        /** My rotor order. */
+        private final String[] _order;
+    }
+
+    /** Suppose that the test letter is plugged to X and follow the
+     *  implications through the menu, whose edge I has substitution
+     *  ROWS[I], and the diagonal board.  Bit V of PLUGS[L] is left set
+     *  iff L is implied to be plugged to V; QUEUE holds implications not
+     *  yet followed.  Returns false as soon as some letter is implied to
+     *  be plugged to two letters. */
+    private boolean close(int x, int[][] rows, int[] plugs, int[] queue) {
+        Arrays.fill(plugs, 0);
+        int head = 0, tail = 0;
+        plugs[_test] = 1 << x;
+        queue[tail] = _test * _size + x;
+        tail += 1;
+        while (head < tail) {
+            int letter = queue[head] / _size, plug = queue[head] % _size;
+            head += 1;
+            for (int k = -1; k < _edges[letter].length; k += 1) {
+                int to, toPlug;
+                if (k < 0) {
+                    to = plug;
+                    toPlug = letter;
+                } else {
+                    int e = _edges[letter][k];
+                    to = _plain[e] == letter ? _cipher[e] : _plain[e];
+                    toPlug = rows[e][plug];
+                }
+                int bit = 1 << toPlug;
+                if ((plugs[to] & bit) == 0) {
+                    if (plugs[to] != 0) {
+                        return false;
+                    }
+                    plugs[to] = bit;
+                    queue[tail] = to * _size + toPlug;
+                    tail += 1;
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Machine (catalog and rings, identity plugboard) searched. */
+    private final Machine _machine;
+
+    /** Its alphabet. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet. */
+    private final int _size;
+
+    /** Index in the message of the first crib letter. */
+    private final int _offset;
+
+    /** Crib letter I is _plain[I], which encrypts to _cipher[I]. */
+    private final int[] _plain, _cipher;
+
+    /** _edges[L] lists the crib letters whose menu edge touches L. */
+    private final int[][] _edges;
+
+    /** The letter whose plug is supposed. */
+    private final int _test;
+}
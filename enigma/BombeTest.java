@@ -0,0 +1,121 @@
+package enigma;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Bombe class.
+ *  @author Daric Lim
+ */
+public class BombeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** Rotor orders searched; the first is the true one. */
+    private static final String[][] ORDERS = {
+        { "B", "III", "I", "II" },
+        { "B", "I", "II", "III" },
+        { "B", "II", "III", "I" },
+    };
+
+    /** True setting of the test message. */
+    private static final String SETTING = "QEV";
+
+    /** True plugboard of the test message. */
+    private static final String PLUGS = "(AQ) (HR) (BZ) (CX) (DM) (EK)";
+
+    /** Length of the cribs tried. */
+    private static final int CRIB_LENGTH = 25;
+
+    /** Return ENGLISH as encrypted with the true key. */
+    private String ciphertext() {
+        Machine machine = navalMachine(ORDERS[0], PLUGS);
+        machine.setRotors(SETTING);
+        return machine.convert(ENGLISH);
+    }
+
+    /** Check that a Bombe with the crib of ENGLISH at OFFSET stops at the
+     *  true key, with plugs that agree with the true plugboard on every
+     *  letter of the menu they decide. */
+    private void checkCrib(int offset) {
+        String testId = "crib at " + offset;
+        String ciphertext = ciphertext();
+        String crib = ENGLISH.substring(offset, offset + CRIB_LENGTH);
+        Bombe bombe = new Bombe(navalMachine(ORDERS[0], ""), ciphertext,
+                                crib, offset);
+        List<Bombe.Stop> stops =
+            bombe.run(ORDERS, ForkJoinPool.commonPool());
+        Bombe.Stop found = null;
+        for (Bombe.Stop stop : stops) {
+            if (stop.rotors()[1].equals(ORDERS[0][1])
+                && stop.rotors()[2].equals(ORDERS[0][2])
+                && stop.rotors()[3].equals(ORDERS[0][3])
+                && stop.setting().equals(SETTING)) {
+                found = stop;
+            }
+        }
+        assertTrue(msg(testId, "no stop at the true key in %s", stops),
+                   found != null);
+        Permutation real = new Permutation(PLUGS, UPPER),
+            plugs = new Permutation(found.plugs(), UPPER);
+        String menu = crib + ciphertext.substring(offset,
+                                                  offset + CRIB_LENGTH);
+        for (int i = 0; i < menu.length(); i += 1) {
+            char c = menu.charAt(i);
+            if (plugs.permute(c) != c) {
+                assertEquals(msg(testId, "plug of %c", c),
+                             real.permute(c), plugs.permute(c));
+            }
+        }
+        char test = bombe.testLetter();
+        assertEquals(msg(testId, "plug of the test letter %c", test),
+                     real.permute(test), plugs.permute(test));
+    }
+
+    @Test
+    public void stopsTest() {
+        checkCrib(0);
+        checkCrib(40);
+        checkCrib(300);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void selfEncryptionTest() {
+        String ciphertext = ciphertext();
+        String crib = ciphertext.substring(0, 3);
+        new Bombe(navalMachine(ORDERS[0], ""), ciphertext, crib, 0);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void overrunTest() {
+        String ciphertext = ciphertext();
+        int offset = ENGLISH.length() - CRIB_LENGTH + 1;
+        new Bombe(navalMachine(ORDERS[0], ""), ciphertext,
+                  ENGLISH.substring(offset - 1, offset - 1 + CRIB_LENGTH),
+                  offset);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void negativeOffsetTest() {
+        new Bombe(navalMachine(ORDERS[0], ""), ciphertext(), "IT", -1);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void largeAlphabetTest() {
+        char[] chars = new char[Integer.SIZE + 2];
+        for (int i = 0; i < chars.length; i += 1) {
+            chars[i] = (char) ('A' + i);
+        }
+        Machine machine = randomMachine(new Alphabet(new String(chars)),
+                                        3, 1, 1);
+        new Bombe(machine, "AB", "BA", 0);
+    }
+}
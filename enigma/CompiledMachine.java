@@ -0,0 +1,95 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** An Enigma machine whose rotor order, rings and plugboard are fixed, so
+ *  that its whole substitution (plugboard, rotors, reflector, rotors,
+ *  plugboard) depends only on how many keys have been pressed.  All the
+ *  substitutions it will ever use are tabulated when it is made, by
+ *  Machine.compile(), so converting a character is one table load.  The
+ *  rotor positions reached from the starting one eventually repeat; the
+ *  table holds one row per position up to the first repeat, and
+ *  converting wraps back to the repeated row.  For three moving rotors
+ *  with one notch each that is 26 x 25 x 26 = 16,900 rows of 26 bytes,
+ *  about 430 KB.
+ *  @author Daric Lim
+ */
+class CompiledMachine {
+
+    /** A compiled machine over ALPHABET whose Kth keypress uses the
+     *  substitution in row K of TABLE (rows of ALPHABET.size() bytes)
+     *  until the last row, after which it continues from row LOOP. */
+    CompiledMachine(Alphabet alphabet, byte[] table, int loop) {
+        _alphabet = alphabet;
+        _size = alphabet.size();
+        _table = table;
+        _rows = table.length / _size;
+        _loop = loop;
+        _row = 0;
+    }
+
+    /** Returns the result of converting the input character C (as an
+     *  index in the range 0..alphabet size - 1), after first advancing
+     *  the machine.  A C out of range is an error, and leaves the
+     *  machine where it was, rather than reading another row's entry. */
+    int convert(int c) {
+        if (c < 0 || c >= _size) {
+            throw error("Index %d is not in alphabet", c);
+        }
+        int result = _table[_row * _size + c] & BYTE_MASK;
+        _row += 1;
+        if (_row == _rows) {
+            _row = _loop;
+        }
+        return result;
+    }
+
+    /** Returns the encoding/decoding of MSG, advancing the machine
+     *  accordingly. */
+    String convert(String msg) {
+        char[] result = new char[msg.length()];
+        for (int i = 0; i < result.length; i += 1) {
+            char currChar = msg.charAt(i);
+            if (!_alphabet.contains(currChar)) {
+                throw error("Contains characters not in alphabet");
+            }
+            result[i] = _alphabet.toChar(convert(_alphabet.toInt(currChar)));
+        }
+        return new String(result);
+    }
+
+    /** Return the number of distinct rotor positions I have tabulated. */
+    int positions() {
+        return _rows;
+    }
+
+    /** Return the number of bytes my substitution table occupies. */
+    long tableBytes() {
+        return _table.length;
+    }
+
+    /** Largest substitution table Machine.compile() will build. */
+    static final long MAX_BYTES = 1 << 28;
+
+    /** Mask that turns a stored byte into an index. */
+    private static final int BYTE_MASK = 0xFF;
+
+    /** My alphabet. */
+    private final Alphabet _alphabet;
+
+    /** Size of my alphabet, and so of each row of _table. */
+    private final int _size;
+
+    /** Row K (entries K * _size .. (K+1) * _size - 1) is the
+     *  substitution used at the Kth keypress. */
+    private final byte[] _table;
+
+    /** Number of rows in _table. */
+    private final int _rows;
+
+    /** Row that follows the last row. */
+    private final int _loop;
+
+    /** Row the next keypress will use. */
+    private int _row;
+}
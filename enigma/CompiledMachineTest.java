@@ -0,0 +1,89 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the CompiledMachine class.
+ *  @author Daric Lim
+ */
+public class CompiledMachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** Return a naval machine with three moving rotors, set to AXLE
+     *  with rings BCDE. */
+    private Machine naval() {
+        Machine result =
+            navalMachine(new String[] { "B", "Beta", "III", "IV", "I" },
+                         "(AQ) (BF) (HR) (MZ) (TX)");
+        result.setRings("BCDE");
+        result.setRotors("AXLE");
+        return result;
+    }
+
+    /** Check that COMPILED and MACHINE convert each of the indices 0, 1,
+     *  ... (wrapping at the alphabet size) alike, LEN times over. */
+    private void checkSame(String testId, Machine machine,
+                           CompiledMachine compiled, int len) {
+        int size = machine.alphabet().size();
+        for (int i = 0; i < len; i += 1) {
+            int c = i % size;
+            assertEquals(msg(testId, "keypress %d", i),
+                         machine.convert(c), compiled.convert(c));
+        }
+    }
+
+    @Test
+    public void navalTest() {
+        Machine machine = naval();
+        CompiledMachine compiled = machine.compile();
+        assertEquals(msg("naval", "compile moved the machine"),
+                     0, machine.position());
+        assertEquals(naval().convert(ENGLISH), compiled.convert(ENGLISH));
+        assertEquals(msg("naval", "table size"),
+                     (long) compiled.positions() * UPPER.size(),
+                     compiled.tableBytes());
+    }
+
+    @Test
+    public void wrapTest() {
+        Machine machine = randomMachine(new Alphabet("ABCDEF"), 2, 1, 7L);
+        CompiledMachine compiled = machine.compile();
+        checkSame("wrap", machine, compiled, 10 * compiled.positions());
+    }
+
+    @Test
+    public void continuesTest() {
+        Machine machine = naval();
+        machine.convert(ENGLISH);
+        CompiledMachine compiled = machine.compile();
+        checkSame("continues", machine, compiled, 2 * ENGLISH.length());
+    }
+
+    @Test
+    public void indexRangeTest() {
+        Machine machine = naval();
+        CompiledMachine compiled = machine.compile();
+        int[] bad = { -1, UPPER.size(), Integer.MAX_VALUE };
+        for (int c : bad) {
+            try {
+                compiled.convert(c);
+                fail(msg("indexRange", "converted %d", c));
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        }
+        checkSame("indexRange", machine, compiled, ENGLISH.length());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void badCharacterTest() {
+        naval().compile().convert("HELLO WORLD");
+    }
+}
@@ -0,0 +1,61 @@
+package enigma;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static enigma.EnigmaException.*;
+
+/** An InputStream that encodes/decodes the bytes of another stream
+ *  through a Machine with the byte alphabet (Alphabet.bytes()) as they
+ *  are read, in place in the caller's buffer.  The machine keeps its
+ *  rotor state between reads.
+ *  @author Daric Lim
+ */
+class EnigmaInputStream extends FilterInputStream {
+
+    /** A stream that converts the bytes of IN with MACHINE, whose
+     *  alphabet must be Alphabet.bytes(). */
+    EnigmaInputStream(InputStream in, Machine machine) {
+        super(in);
+        if (!machine.alphabet().isBytes()) {
+            throw error("Byte streams need the byte alphabet");
+        }
+        _machine = machine;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        return b < 0 ? b : _machine.convert(b);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, len);
+        if (n > 0) {
+            _machine.convert(b, off, n, b, off);
+        }
+        return n;
+    }
+
+    /** Skips bytes of the underlying stream, seeking the machine past
+     *  them so that later bytes are converted as if they had been
+     *  read. */
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(n);
+        if (skipped > 0) {
+            _machine.seek(_machine.position() + skipped);
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /** Machine that converts my bytes. */
+    private final Machine _machine;
+}
@@ -0,0 +1,56 @@
+package enigma;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static enigma.EnigmaException.*;
+
+/** An OutputStream that encodes/decodes bytes through a Machine with the
+ *  byte alphabet (Alphabet.bytes()) before writing them to another
+ *  stream.  The machine keeps its rotor state between writes; bytes go
+ *  out through a fixed-size buffer, leaving the caller's arrays
+ *  unchanged.
+ *  @author Daric Lim
+ */
+class EnigmaOutputStream extends FilterOutputStream {
+
+    /** A stream that converts bytes with MACHINE, whose alphabet must be
+     *  Alphabet.bytes(), and writes them to OUT. */
+    EnigmaOutputStream(OutputStream out, Machine machine) {
+        super(out);
+        if (!machine.alphabet().isBytes()) {
+            throw error("Byte streams need the byte alphabet");
+        }
+        _machine = machine;
+        _buffer = new byte[BUFFER_SIZE];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(_machine.convert(b & BYTE_MASK));
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, _buffer.length);
+            _machine.convert(b, off, n, _buffer, 0);
+            out.write(_buffer, 0, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /** Size of my conversion buffer. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Mask that turns a byte into its (unsigned) byte-alphabet index. */
+    private static final int BYTE_MASK = 0xFF;
+
+    /** Machine that converts my bytes. */
+    private final Machine _machine;
+
+    /** Converted bytes not yet written. */
+    private final byte[] _buffer;
+}
@@ -0,0 +1,69 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/** A Reader that encodes/decodes the characters of another Reader
+ *  through a Machine as they are read.  The machine keeps its rotor
+ *  state between reads, so reading a text through an EnigmaReader in
+ *  pieces gives the same result as converting it whole, in memory
+ *  bounded by the caller's buffer.
+ *  @author Daric Lim
+ */
+class EnigmaReader extends Reader {
+
+    /** A Reader that converts the characters of IN with MACHINE.
+     *  Characters not in MACHINE's alphabet are dropped if STRIP, and
+     *  passed through unchanged (without advancing MACHINE) otherwise. */
+    EnigmaReader(Reader in, Machine machine, boolean strip) {
+        _in = in;
+        _machine = machine;
+        _alphabet = machine.alphabet();
+        _strip = strip;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            int n = _in.read(cbuf, off, len);
+            if (n < 0) {
+                return n;
+            }
+            int k = off;
+            for (int i = off; i < off + n; i += 1) {
+                char c = cbuf[i];
+                if (_alphabet.contains(c)) {
+                    cbuf[k] = _alphabet.toChar(
+                        _machine.convert(_alphabet.toInt(c)));
+                    k += 1;
+                } else if (!_strip) {
+                    cbuf[k] = c;
+                    k += 1;
+                }
+            }
+            if (k > off) {
+                return k - off;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        _in.close();
+    }
+
+    /** Source of the characters I convert. */
+    private final Reader _in;
+
+    /** Machine that converts them. */
+    private final Machine _machine;
+
+    /** Alphabet of _machine. */
+    private final Alphabet _alphabet;
+
+    /** True iff characters outside _alphabet are dropped. */
+    private final boolean _strip;
+}
@@ -0,0 +1,198 @@
+package enigma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the EnigmaReader, EnigmaWriter,
+ *  EnigmaInputStream and EnigmaOutputStream classes.
+ *  @author Daric Lim
+ */
+public class EnigmaStreamTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** Text with characters outside the upper-case alphabet, long enough
+     *  to fill EnigmaWriter's buffer several times over. */
+    private static final String TEXT;
+    static {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 3 * 8192) {
+            text.append("It was the best of times, it was the worst of "
+                        + "times; IT WAS THE AGE OF WISDOM.\n");
+        }
+        TEXT = text.toString();
+    }
+
+    /** Return a naval machine set to AXLE with rings BCDE. */
+    private Machine naval() {
+        Machine result =
+            navalMachine(new String[] { "B", "Beta", "III", "IV", "I" },
+                         "(AQ) (BF) (HR) (MZ) (TX)");
+        result.setRings("BCDE");
+        result.setRotors("AXLE");
+        return result;
+    }
+
+    /** Return TEXT as naval() converts it, dropping the characters not in
+     *  its alphabet if STRIP and keeping them in place otherwise. */
+    private String expected(boolean strip) {
+        Machine machine = naval();
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < TEXT.length(); i += 1) {
+            char c = TEXT.charAt(i);
+            if (UPPER.contains(c)) {
+                result.append(machine.convert(String.valueOf(c)));
+            } else if (!strip) {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /** Return everything read from IN, CHUNK characters at a time. */
+    private String readAll(Reader in, int chunk) throws IOException {
+        StringBuilder result = new StringBuilder();
+        char[] buffer = new char[chunk];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            result.append(buffer, 0, n);
+        }
+        return result.toString();
+    }
+
+    /** Return TEXT written through an EnigmaWriter with STRIP, CHUNK
+     *  characters at a time. */
+    private String writeAll(boolean strip, int chunk) throws IOException {
+        StringWriter result = new StringWriter();
+        try (Writer out = new EnigmaWriter(result, naval(), strip)) {
+            for (int i = 0; i < TEXT.length(); i += chunk) {
+                out.write(TEXT, i, Math.min(chunk, TEXT.length() - i));
+            }
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void readerTest() throws IOException {
+        for (boolean strip : new boolean[] { true, false }) {
+            for (int chunk : new int[] { 1, 7, 1 << 16 }) {
+                Reader in =
+                    new EnigmaReader(new StringReader(TEXT), naval(), strip);
+                assertEquals(msg("reader", "strip %b, chunk %d",
+                                 strip, chunk),
+                             expected(strip), readAll(in, chunk));
+            }
+        }
+    }
+
+    @Test
+    public void readerOnlyStrippedTest() throws IOException {
+        Reader in = new EnigmaReader(new StringReader(" ,.;\n"), naval(),
+                                     true);
+        assertEquals(-1, in.read(new char[2]));
+    }
+
+    @Test
+    public void writerTest() throws IOException {
+        for (boolean strip : new boolean[] { true, false }) {
+            for (int chunk : new int[] { 1, 7, 1 << 16 }) {
+                assertEquals(msg("writer", "strip %b, chunk %d",
+                                 strip, chunk),
+                             expected(strip), writeAll(strip, chunk));
+            }
+        }
+    }
+
+    /** Return LENGTH bytes drawn from SEED. */
+    private byte[] randomBytes(int length, long seed) {
+        byte[] result = new byte[length];
+        new Random(seed).nextBytes(result);
+        return result;
+    }
+
+    /** Return a machine over the byte alphabet. */
+    private Machine bytesMachine() {
+        return randomMachine(Alphabet.bytes(), 3, 2, 11);
+    }
+
+    @Test
+    public void inputStreamTest() throws IOException {
+        byte[] data = randomBytes(100003, 12);
+        byte[] expected = bytesMachine().convert(data);
+        InputStream in =
+            new EnigmaInputStream(new ByteArrayInputStream(data),
+                                  bytesMachine());
+        byte[] result = new byte[data.length];
+        result[0] = (byte) in.read();
+        int k = 1;
+        for (int n = in.read(result, k, 5); n > 0;
+             n = in.read(result, k, Math.min(4099, result.length - k))) {
+            k += n;
+        }
+        assertEquals(data.length, k);
+        assertEquals(-1, in.read());
+        assertArrayEquals(expected, result);
+    }
+
+    @Test
+    public void inputStreamSkipTest() throws IOException {
+        byte[] data = randomBytes(100003, 13);
+        byte[] expected = bytesMachine().convert(data);
+        InputStream in =
+            new EnigmaInputStream(new ByteArrayInputStream(data),
+                                  bytesMachine());
+        int skip = 70001;
+        byte[] head = new byte[10];
+        assertEquals(head.length, in.read(head));
+        assertEquals(skip, in.skip(skip));
+        byte[] tail = in.readAllBytes();
+        assertArrayEquals(Arrays.copyOf(expected, head.length), head);
+        assertArrayEquals(Arrays.copyOfRange(expected, head.length + skip,
+                                             data.length), tail);
+    }
+
+    @Test
+    public void outputStreamTest() throws IOException {
+        byte[] data = randomBytes(100003, 14);
+        byte[] copy = data.clone();
+        byte[] expected = bytesMachine().convert(data);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (OutputStream out =
+                 new EnigmaOutputStream(result, bytesMachine())) {
+            out.write(data[0]);
+            out.write(data, 1, 5);
+            out.write(data, 6, data.length - 6);
+        }
+        assertArrayEquals(expected, result.toByteArray());
+        assertArrayEquals(msg("outputStream", "caller's array changed"),
+                          copy, data);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void inputStreamAlphabetTest() {
+        new EnigmaInputStream(new ByteArrayInputStream(new byte[0]),
+                              naval());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void outputStreamAlphabetTest() {
+        new EnigmaOutputStream(new ByteArrayOutputStream(), naval());
+    }
+}
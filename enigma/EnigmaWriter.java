@@ -0,0 +1,74 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/** A Writer that encodes/decodes characters through a Machine before
+ *  writing them to another Writer.  The machine keeps its rotor state
+ *  between writes, and characters go out through a fixed-size buffer,
+ *  so text of any length is converted in constant memory.
+ *  @author Daric Lim
+ */
+class EnigmaWriter extends Writer {
+
+    /** A Writer that converts characters with MACHINE and writes them to
+     *  OUT.  Characters not in MACHINE's alphabet are dropped if STRIP,
+     *  and passed through unchanged (without advancing MACHINE)
+     *  otherwise. */
+    EnigmaWriter(Writer out, Machine machine, boolean strip) {
+        _out = out;
+        _machine = machine;
+        _alphabet = machine.alphabet();
+        _strip = strip;
+        _buffer = new char[BUFFER_SIZE];
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        int k = 0;
+        for (int i = off; i < off + len; i += 1) {
+            char c = cbuf[i];
+            if (_alphabet.contains(c)) {
+                _buffer[k] =
+                    _alphabet.toChar(_machine.convert(_alphabet.toInt(c)));
+                k += 1;
+            } else if (!_strip) {
+                _buffer[k] = c;
+                k += 1;
+            }
+            if (k == _buffer.length) {
+                _out.write(_buffer, 0, k);
+                k = 0;
+            }
+        }
+        _out.write(_buffer, 0, k);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        _out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        _out.close();
+    }
+
+    /** Size of my conversion buffer. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Where converted characters go. */
+    private final Writer _out;
+
+    /** Machine that converts them. */
+    private final Machine _machine;
+
+    /** Alphabet of _machine. */
+    private final Alphabet _alphabet;
+
+    /** True iff characters outside _alphabet are dropped. */
+    private final boolean _strip;
+
+    /** Converted characters not yet written. */
+    private final char[] _buffer;
+}
@@ -0,0 +1,360 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static enigma.EnigmaException.*;
+
+/** A ciphertext-only search for the rotor order and start positions
+ *  that produced a message.  Every start position of every given rotor
+ *  order is tried, and each decryption is scored by its index of
+ *  coincidence (the chance that two of its letters picked at random are
+ *  equal), which is markedly higher for natural-language text than for
+ *  the near-random output of a wrong key.  The work is split across a
+ *  ForkJoinPool.  Each task sets up one copy of the machine and fixed
+ *  buffers, so trying a candidate allocates nothing.
+ *  @author Daric Lim
+ */
+class KeySearch {
+
+    /** A search for the key of CIPHERTEXT among the rotor orders ORDERS
+     *  (each as for Machine.insertRotors) of MACHINE, with MACHINE's
+     *  plugboard and rings.  MACHINE is copied and not changed. */
+    KeySearch(Machine machine, String[][] orders, String ciphertext) {
+        _machine = machine.copy();
+        _alphabet = machine.alphabet();
+        _orders = new String[orders.length][];
+        _free = new int[orders.length][];
+        for (int k = 0; k < orders.length; k += 1) {
+            _orders[k] = orders[k].clone();
+            _free[k] = freeSlots(_orders[k]);
+            if (_free[k].length * Math.log(_alphabet.size())
+                >= Math.log(Long.MAX_VALUE)) {
+                throw error("Too many start positions to search");
+            }
+        }
+        _cipher = _alphabet.toInts(ciphertext);
+    }
+
+    /** Returns the (at most) COUNT best-scoring keys, best first, trying
+     *  the candidates concurrently on POOL.  Keys with equal scores are
+     *  ordered by rotor order and then by setting, so the result does
+     *  not depend on how the work was split. */
+    List<Candidate> best(int count, ForkJoinPool pool) {
+        if (count <= 0) {
+            throw error("Must ask for at least one candidate");
+        }
+        List<Candidate> result = new ArrayList<>();
+        if (_orders.length == 0) {
+            return result;
+        }
+        long total = 0;
+        for (int k = 0; k < _orders.length; k += 1) {
+            total += positions(k);
+        }
+        long chunk = Math.max(MIN_CHUNK,
+                              total / (SPLIT * pool.getParallelism()));
+        Best best = pool.invoke(new Search(0, _orders.length, 0,
+                                           positions(0), count, chunk));
+        int[] ranks = new int[best._filled];
+        for (int i = 0; i < ranks.length; i += 1) {
+            int j;
+            for (j = i; j > 0 && best.better(i, ranks[j - 1]); j -= 1) {
+                ranks[j] = ranks[j - 1];
+            }
+            ranks[j] = i;
+        }
+        for (int i : ranks) {
+            result.add(candidate(best._orderOf[i], best._keys[i],
+                                 best._scores[i]));
+        }
+        return result;
+    }
+
+    /** A scored key. */
+    static class Candidate {
+
+        /** A key with rotors ROTORS and setting SETTING (as for
+         *  Machine.insertRotors and Machine.setRotors), whose decryption
+         *  has index of coincidence SCORE. */
+        Candidate(String[] rotors, String setting, double score) {
+            _rotors = rotors;
+            _setting = setting;
+            _score = score;
+        }
+
+        /** Return the names of my rotors, reflector first. */
+        String[] rotors() {
+            return _rotors.clone();
+        }
+
+        /** Return my rotor setting. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return the index of coincidence of my decryption. */
+        double score() {
+            return _score;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s %.5f", String.join(" ", _rotors),
+                                 _setting, _score);
+        }
+
+        /** My rotor names. */
+        private final String[] _rotors;
+
+        /** My setting. */
+        private final String _setting;
+
+        /** My score. */
+        private final double _score;
+    }
+
+    /** Return the indices, in a setting of rotor order ORDER, of the
+     *  rotors that have more than one position.  Checks that ORDER is a
+     *  valid rotor order for _machine. */
+    private int[] freeSlots(String[] order) {
+        Machine trial = _machine.copy();
+        trial.insertRotors(order);
+        int[] result = new int[order.length - 1];
+        int n = 0;
+        for (int i = 0; i < result.length; i += 1) {
+            if (!trial.reflecting(i + 1)) {
+                result[n] = i;
+                n += 1;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Return the number of start positions of rotor order ORDER. */
+    private long positions(int order) {
+        long result = 1;
+        for (int i = 0; i < _free[order].length; i += 1) {
+            result *= _alphabet.size();
+        }
+        return result;
+    }
+
+    /** Return the candidate for start position KEY of rotor order ORDER,
+     *  with IoC numerator SCORE. */
+    private Candidate candidate(int order, long key, long score) {
+        int[] setting = new int[_orders[order].length - 1];
+        decode(order, key, setting);
+        char[] chars = new char[setting.length];
+        for (int i = 0; i < setting.length; i += 1) {
+            chars[i] = _alphabet.toChar(setting[i]);
+        }
+        long n = _cipher.length;
+        double ioc = n < 2 ? 0 : (double) score / (n * (n - 1));
+        return new Candidate(_orders[order].clone(), new String(chars), ioc);
+    }
+
+    /** Set the free slots of SETTING to start position KEY of rotor
+     *  order ORDER, leftmost rotor most significant. */
+    private void decode(int order, long key, int[] setting) {
+        int[] free = _free[order];
+        int size = _alphabet.size();
+        for (int j = free.length - 1; j >= 0; j -= 1) {
+            setting[free[j]] = (int) (key % size);
+            key /= size;
+        }
+    }
+
+    /** A task that tries start positions START..END-1 of rotor orders
+     *  FIRSTORDER..LASTORDER-1 (all positions of the later orders). */
+    private class Search extends RecursiveTask<Best> {
+
+        /** Tries start positions START..END-1 of FIRSTORDER and all
+         *  positions of the following orders up to LASTORDER, keeping the
+         *  COUNT best and splitting the work into tasks of no more than
+         *  CHUNK positions. */
+        Search(int firstOrder, int lastOrder, long start, long end,
+               int count, long chunk) {
+            _firstOrder = firstOrder;
+            _lastOrder = lastOrder;
+            _start = start;
+            _end = end;
+            _count = count;
+            _chunk = chunk;
+        }
+
+        @Override
+        protected Best compute() {
+            if (_lastOrder - _firstOrder > 1) {
+                int mid = (_firstOrder + _lastOrder) >>> 1;
+                return merge(new Search(_firstOrder, mid, 0,
+                                        positions(_firstOrder), _count,
+                                        _chunk),
+                             new Search(mid, _lastOrder, 0, positions(mid),
+                                        _count, _chunk));
+            }
+            if (_end - _start > _chunk) {
+                long mid = (_start + _end) >>> 1;
+                return merge(new Search(_firstOrder, _lastOrder, _start, mid,
+                                        _count, _chunk),
+                             new Search(_firstOrder, _lastOrder, mid, _end,
+                                        _count, _chunk));
+            }
+            return scan();
+        }
+
+        /** Run LEFT and RIGHT and return their combined best. */
+        private Best merge(Search left, Search right) {
+            invokeAll(left, right);
+            Best result = left.join();
+            result.addAll(right.join());
+            return result;
+        }
+
+        /** Try my start positions, one by one, on a single machine. */
+        private Best scan() {
+            Best result = new Best(_count);
+            Machine machine = _machine.copy();
+            machine.insertRotors(_orders[_firstOrder]);
+            int[] setting = new int[_orders[_firstOrder].length - 1];
+            int[] plain = new int[_cipher.length];
+            int[] counts = new int[_alphabet.size()];
+            for (long key = _start; key < _end; key += 1) {
+                decode(_firstOrder, key, setting);
+                machine.setRotors(setting);
+                machine.convert(_cipher, 0, _cipher.length, plain, 0);
+                Arrays.fill(counts, 0);
+                for (int c : plain) {
+                    counts[c] += 1;
+                }
+                long score = 0;
+                for (int n : counts) {
+                    score += (long) n * (n - 1);
+                }
+                result.add(score, _firstOrder, key);
+            }
+            return result;
+        }
+
+        /** Rotor orders I cover. */
+        private final int _firstOrder, _lastOrder;
+
+        /** Start positions of _firstOrder I cover. */
+        private final long _start, _end;
+
+        /** Number of candidates kept. */
+        private final int _count;
+
+        /** Largest range tried without splitting. */
+        private final long _chunk;
+    }
+
+    /** The best candidates found so far, kept in fixed arrays so that
+     *  offering a candidate allocates nothing. */
+    private static class Best {
+
+        /** An empty record of the best CAPACITY candidates. */
+        Best(int capacity) {
+            _scores = new long[capacity];
+            _orderOf = new int[capacity];
+            _keys = new long[capacity];
+        }
+
+        /** Offer the candidate with score SCORE, rotor order ORDER and
+         *  start position KEY. */
+        void add(long score, int order, long key) {
+            if (_filled < _scores.length) {
+                set(_filled, score, order, key);
+                _filled += 1;
+                if (_filled == _scores.length) {
+                    findWorst();
+                }
+            } else if (beats(score, order, key, _worst)) {
+                set(_worst, score, order, key);
+                findWorst();
+            }
+        }
+
+        /** Offer all the candidates of OTHER. */
+        void addAll(Best other) {
+            for (int i = 0; i < other._filled; i += 1) {
+                add(other._scores[i], other._orderOf[i], other._keys[i]);
+            }
+        }
+
+        /** Return true iff my candidate #A ranks above my candidate #B. */
+        boolean better(int a, int b) {
+            return beats(_scores[a], _orderOf[a], _keys[a], b);
+        }
+
+        /** Return true iff the candidate SCORE, ORDER, KEY ranks above my
+         *  candidate #I: a higher score, or an equal score and an
+         *  earlier order and key. */
+        private boolean beats(long score, int order, long key, int i) {
+            if (score != _scores[i]) {
+                return score > _scores[i];
+            }
+            if (order != _orderOf[i]) {
+                return order < _orderOf[i];
+            }
+            return key < _keys[i];
+        }
+
+        /** Make candidate #I the one with SCORE, ORDER and KEY. */
+        private void set(int i, long score, int order, long key) {
+            _scores[i] = score;
+            _orderOf[i] = order;
+            _keys[i] = key;
+        }
+
+        /** Set _worst to the lowest-ranked candidate. */
+        private void findWorst() {
+            _worst = 0;
+            for (int i = 1; i < _filled; i += 1) {
+                if (better(_worst, i)) {
+                    _worst = i;
+                }
+            }
+        }
+
+        /** IoC numerators (sum of n * (n - 1) over letter counts n). */
+        private final long[] _scores;
+
+        /** Rotor order of each candidate. */
+        private final int[] _orderOf;
+
+        /** Start position of each candidate. */
+        private final long[] _keys;
+
+        /** Number of candidates held. */
+        private int _filled;
+
+        /** Index of the lowest-ranked candidate, once full. */
+        private int _worst;
+    }
+
+    /** Smallest number of positions a task tries. */
+    private static final long MIN_CHUNK = 1 << 8;
+
+    /** Number of tasks aimed for per pool thread. */
+    private static final int SPLIT = 4;
+
+    /** Machine (plugboard, catalog and rings) whose keys I search. */
+    private final Machine _machine;
+
+    /** Alphabet of _machine. */
+    private final Alphabet _alphabet;
+
+    /** Rotor orders searched. */
+    private final String[][] _orders;
+
+    /** _free[k] lists the indices, in a setting of _orders[k], of the
+     *  rotors with more than one position. */
+    private final int[][] _free;
+
+    /** The message, as indices. */
+    private final int[] _cipher;
+}
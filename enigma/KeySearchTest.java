@@ -0,0 +1,146 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the KeySearch class.
+ *  @author Daric Lim
+ */
+public class KeySearchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** Rotor orders of the naval searches; the first is the true one. */
+    private static final String[][] NAVAL_ORDERS = {
+        { "B", "III", "I", "II" },
+        { "B", "I", "II", "III" },
+        { "B", "II", "III", "I" },
+        { "C", "III", "I", "II" },
+    };
+
+    /** Alphabet of the small searches, in index order. */
+    private static final Alphabet SMALL = new Alphabet("ABCDEF");
+
+    /** Rotor orders of the small searches, of a machine made by
+     *  randomMachine with four moving rotors. */
+    private static final String[][] SMALL_ORDERS = {
+        { "R", "M1", "M2", "M3", "M4" },
+        { "R", "M4", "M3", "M2", "M1" },
+        { "R", "M2", "M1", "M4", "M3" },
+    };
+
+    /** Return CANDIDATES, each as its rotors, setting and exact score. */
+    private List<String> describe(List<KeySearch.Candidate> candidates) {
+        List<String> result = new ArrayList<>();
+        for (KeySearch.Candidate c : candidates) {
+            result.add(String.join(" ", c.rotors()) + " " + c.setting()
+                       + " " + c.score());
+        }
+        return result;
+    }
+
+    /** Return the index of ROTORS in ORDERS. */
+    private int orderIndex(String[][] orders, String[] rotors) {
+        for (int k = 0; k < orders.length; k += 1) {
+            if (String.join(" ", orders[k]).equals(String.join(" ", rotors))) {
+                return k;
+            }
+        }
+        throw new AssertionError("unknown rotor order");
+    }
+
+    /** Check that CANDIDATES, from a search of ORDERS, are best first,
+     *  with equal scores ordered by rotor order and then by setting. */
+    private void checkRanked(String testId, String[][] orders,
+                             List<KeySearch.Candidate> candidates) {
+        for (int i = 1; i < candidates.size(); i += 1) {
+            KeySearch.Candidate a = candidates.get(i - 1),
+                b = candidates.get(i);
+            assertTrue(msg(testId, "score at %d", i),
+                       a.score() >= b.score());
+            if (a.score() == b.score()) {
+                int orderA = orderIndex(orders, a.rotors()),
+                    orderB = orderIndex(orders, b.rotors());
+                assertTrue(msg(testId, "order at %d", i), orderA <= orderB);
+                if (orderA == orderB) {
+                    assertTrue(msg(testId, "setting at %d", i),
+                               a.setting().compareTo(b.setting()) < 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void trueKeyFirstTest() {
+        Machine machine = navalMachine(NAVAL_ORDERS[0], "(AQ) (HR)");
+        machine.setRotors("QEV");
+        String ciphertext = machine.convert(ENGLISH);
+        List<KeySearch.Candidate> best =
+            new KeySearch(navalMachine(NAVAL_ORDERS[0], "(AQ) (HR)"),
+                          NAVAL_ORDERS, ciphertext)
+            .best(5, ForkJoinPool.commonPool());
+        assertEquals(5, best.size());
+        assertArrayEquals(NAVAL_ORDERS[0], best.get(0).rotors());
+        assertEquals("QEV", best.get(0).setting());
+        assertTrue(msg("trueKeyFirst", "no margin"),
+                   best.get(0).score() > best.get(1).score());
+        checkRanked("trueKeyFirst", NAVAL_ORDERS, best);
+    }
+
+    @Test
+    public void splitTest() {
+        Machine machine = randomMachine(SMALL, 4, 2, 12);
+        ForkJoinPool serial = new ForkJoinPool(1),
+            parallel = new ForkJoinPool(4);
+        try {
+            for (String ciphertext : new String[] { "ABCDE", "FACADE" }) {
+                KeySearch search =
+                    new KeySearch(machine, SMALL_ORDERS, ciphertext);
+                int total = SMALL_ORDERS.length * 6 * 6 * 6 * 6;
+                List<KeySearch.Candidate> all = search.best(total, serial);
+                assertEquals(total, all.size());
+                checkRanked("split " + ciphertext, SMALL_ORDERS, all);
+                for (int count : new int[] { 1, 10, 300, total }) {
+                    String testId = "split " + ciphertext + " " + count;
+                    List<String> expected =
+                        describe(all.subList(0, count));
+                    assertEquals(msg(testId, "serial"), expected,
+                                 describe(search.best(count, serial)));
+                    assertEquals(msg(testId, "parallel"), expected,
+                                 describe(search.best(count, parallel)));
+                }
+            }
+        } finally {
+            serial.shutdown();
+            parallel.shutdown();
+        }
+    }
+
+    @Test
+    public void noOrdersTest() {
+        KeySearch search = new KeySearch(randomMachine(SMALL, 4, 2, 12),
+                                         new String[0][], "ABC");
+        assertTrue(search.best(3, ForkJoinPool.commonPool()).isEmpty());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void badCharacterTest() {
+        new KeySearch(randomMachine(SMALL, 4, 2, 12), SMALL_ORDERS, "ABZ");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void badCountTest() {
+        new KeySearch(randomMachine(SMALL, 4, 2, 12), SMALL_ORDERS, "ABC")
+            .best(0, ForkJoinPool.commonPool());
+    }
+}
@@ -1,7 +1,21 @@
 package enigma;
 
-import java.util.HashMap;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static enigma.EnigmaException.*;
 
@@ -12,9 +26,25 @@ class Machine {
 
     /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
      *  and 0 <= PAWLS < NUMROTORS pawls.  ALLROTORS contains all the
-     *  available rotors. */
+     *  available rotors.  The Machine takes the RotorSpec of each of
+     *  ALLROTORS, and starts each at the rotor's current setting and
+     *  ring; it does not change the Rotors themselves. */
     Machine(Alphabet alpha, int numRotors, int pawls,
             Collection<Rotor> allRotors) {
+        this(alpha, numRotors, pawls, specs(allRotors));
+        int k = 0;
+        for (Rotor rotor : allRotors) {
+            _allSettings[k] = rotor.setting();
+            _allRings[k] = rotor.getRing();
+            k += 1;
+        }
+    }
+
+    /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
+     *  and 0 <= PAWLS < NUMROTORS pawls, whose available rotors are
+     *  described by CATALOG, all initially at setting and ring 0.
+     *  CATALOG may be shared by any number of Machines. */
+    Machine(Alphabet alpha, int numRotors, int pawls, RotorSpec[] catalog) {
         _alphabet = alpha;
 
         if (numRotors <= 1) {
@@ -23,13 +53,64 @@ class Machine {
         if (pawls < 0 || pawls >= numRotors) {
             throw error("Incorrect amount of pawls");
         }
-        if (allRotors.size() < numRotors) {
+        if (catalog.length < numRotors) {
             throw error("More rotor sl ots than available rotors");
         }
         _numRotors = numRotors;
         _numPawls = pawls;
-        _allRotors = allRotors;
-        _currRotors = new HashMap<Integer, Rotor>();
+        _catalog = catalog.clone();
+        _allSettings = new int[_catalog.length];
+        _allRings = new int[_catalog.length];
+        loadSlots(new int[0]);
+        resetOrigin();
+    }
+
+    /** A new Machine in the same state as OTHER.  The two share their
+     *  immutable parts (rotor specs, wiring tables, plugboard and
+     *  recorded revolutions) but change state independently. */
+    private Machine(Machine other) {
+        _alphabet = other._alphabet;
+        _numRotors = other._numRotors;
+        _numPawls = other._numPawls;
+        _catalog = other._catalog;
+        _allSettings = other._allSettings.clone();
+        _allRings = other._allRings.clone();
+        _plugboard = other._plugboard;
+        _slots = other._slots;
+        _slotIndex = other._slotIndex;
+        _moving = other._moving;
+        _reflecting = other._reflecting;
+        _forward = other._forward;
+        _backward = other._backward;
+        _settings = other._settings.clone();
+        _rings = other._rings.clone();
+        _position = other._position;
+        _origin = other._origin.clone();
+        _revolutions = other._revolutions;
+        _loop = other._loop;
+    }
+
+    /** Return a new Machine in my current state, which changes state
+     *  independently of me.  Copying is cheap: only the per-slot
+     *  settings, rings and origin are duplicated. */
+    Machine copy() {
+        return new Machine(this);
+    }
+
+    /** Return the RotorSpecs of ROTORS, in order. */
+    private static RotorSpec[] specs(Collection<Rotor> rotors) {
+        RotorSpec[] result = new RotorSpec[rotors.size()];
+        int k = 0;
+        for (Rotor rotor : rotors) {
+            result[k] = rotor.spec();
+            k += 1;
+        }
+        return result;
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
     }
 
     /** Return the number of rotor slots I have. */
@@ -42,6 +123,12 @@ class Machine {
         return _numPawls;
     }
 
+    /** Return true iff the rotor in SLOT reflects, and so has only
+     *  one position. */
+    boolean reflecting(int slot) {
+        return _reflecting[slot];
+    }
+
     /** Set my rotor slots to the rotors named ROTORS from my set of
      *  available rotors (ROTORS[0] names the reflector).
      *  Initially, all rotors are set at their 0 setting. */
@@ -52,22 +139,25 @@ class Machine {
         if (rotors.length != numRotors()) {
             throw error("Invalid number of rotors");
         }
-        HashMap<Integer, Rotor> newCurrRotors = new HashMap<>();
+        int[] newSlotIndex = new int[rotors.length];
         int numMovingRotors = 0;
         for (int i = 0; i < rotors.length; i += 1) {
             boolean rotorFound = false;
-            for (Rotor rotor : _allRotors) {
+            for (int k = 0; k < _catalog.length; k += 1) {
+                RotorSpec rotor = _catalog[k];
                 if (rotors[i].equals(rotor.name())) {
                     if (i == 0 && !rotor.reflecting()) {
                         throw error("First rotor must reflect");
                     }
-                    if (newCurrRotors.containsValue(rotor)) {
-                        throw error("Rotor already in use");
+                    for (int j = 0; j < i; j += 1) {
+                        if (newSlotIndex[j] == k) {
+                            throw error("Rotor already in use");
+                        }
                     }
                     if (rotor.rotates()) {
                         numMovingRotors += 1;
                     }
-                    newCurrRotors.put(i + 1, rotor);
+                    newSlotIndex[i] = k;
                     rotorFound = true;
                     break;
                 }
@@ -79,7 +169,43 @@ class Machine {
         if (numMovingRotors != numPawls()) {
             throw error("Invalid number of moving rotors");
         }
-        _currRotors = newCurrRotors;
+        saveSlots();
+        loadSlots(newSlotIndex);
+        resetOrigin();
+    }
+
+    /** Record the settings and rings of the rotors in my slots as those
+     *  of the corresponding rotors in _catalog, so that a rotor keeps
+     *  its state when it is taken out and later put back. */
+    private void saveSlots() {
+        for (int i = 0; i < _slots.length; i += 1) {
+            _allSettings[_slotIndex[i]] = _settings[i];
+            _allRings[_slotIndex[i]] = _rings[i];
+        }
+    }
+
+    /** Fill my slots with the rotors of _catalog at SLOTINDEX, and the
+     *  per-slot arrays with their state and wiring. */
+    private void loadSlots(int[] slotIndex) {
+        int n = slotIndex.length;
+        _slotIndex = slotIndex;
+        _slots = new RotorSpec[n];
+        _settings = new int[n];
+        _rings = new int[n];
+        _moving = new boolean[n];
+        _reflecting = new boolean[n];
+        _forward = new WiringTable[n];
+        _backward = new WiringTable[n];
+        for (int i = 0; i < n; i += 1) {
+            RotorSpec rotor = _catalog[slotIndex[i]];
+            _slots[i] = rotor;
+            _settings[i] = _allSettings[slotIndex[i]];
+            _rings[i] = _allRings[slotIndex[i]];
+            _moving[i] = rotor.rotates();
+            _reflecting[i] = rotor.reflecting();
+            _forward[i] = rotor.forward();
+            _backward[i] = rotor.backward();
+        }
     }
 
     /** Set my rotors according to SETTING, which must be a string of
@@ -89,13 +215,36 @@ class Machine {
         if (setting.length() != numRotors() - 1) {
             throw error("Incorrect number of settings given");
         }
+        int[] posns = new int[setting.length()];
         for (int i = 0; i < setting.length(); i += 1) {
             char currChar = setting.charAt(i);
             if (!_alphabet.contains(currChar)) {
                 throw error("Setting is not a char in alphabet");
             }
-            _currRotors.get(i + 2).set(currChar);
+            posns[i] = _alphabet.toInt(currChar);
+        }
+        setRotors(posns);
+    }
+
+    /** Set my rotors according to SETTING, whose element #i is the index
+     *  of the setting of the rotor in slot i + 1, as for
+     *  setRotors(String).  This allocates nothing, so that searches can
+     *  set the rotors once per candidate key. */
+    void setRotors(int[] setting) {
+        if (setting.length != numRotors() - 1) {
+            throw error("Incorrect number of settings given");
+        }
+        for (int i = 0; i < setting.length; i += 1) {
+            int slot = i + 1, posn = setting[i];
+            if (posn < 0 || posn >= _alphabet.size()) {
+                throw error("Setting is not a char in alphabet");
+            }
+            if (_reflecting[slot] && posn != 0) {
+                throw error("reflector has only one position");
+            }
+            _settings[slot] = wrap(posn - _rings[slot]);
         }
+        resetOrigin();
     }
 
     /** Set the plugboard to PLUGBOARD. */
@@ -118,15 +267,49 @@ class Machine {
             if (!_alphabet.contains(currChar)) {
                 throw error("Ring setting is not a char in alphabet");
             }
-            _currRotors.get(i + 2).setRing(_alphabet.toInt(currChar));
+            int slot = i + 1, ring = _alphabet.toInt(currChar);
+            if (_reflecting[slot] && ring != 0) {
+                throw error("reflector has only one ring position");
+            }
+            _rings[slot] = ring;
+        }
+    }
+
+    /** Return the setting of the rotor in SLOT, as an index for
+     *  setRotors.  setRotors places a rotor relative to its ring at the
+     *  time, so this setting restores the rotor's position only after
+     *  its current ring (see ring) has been set. */
+    int setting(int slot) {
+        return wrap(_settings[slot] + _rings[slot]);
+    }
+
+    /** Return the ring of the rotor in SLOT, as an index for setRings. */
+    int ring(int slot) {
+        return _rings[slot];
+    }
+
+    /** Set the ring of the rotor in SLOT to RING, moving its setting by
+     *  the same amount, so that its offset (and so the substitution at
+     *  every keypress until it next reaches a notch) is unchanged; only
+     *  when it carries the rotor to its left changes.  The rotors'
+     *  current positions become the origin of position(), as for
+     *  setRotors.  Allocates nothing. */
+    void shiftRing(int slot, int ring) {
+        if (ring < 0 || ring >= _alphabet.size()) {
+            throw error("Ring setting is not a char in alphabet");
+        }
+        if (_reflecting[slot] && ring != 0) {
+            throw error("reflector has only one ring position");
         }
+        _settings[slot] = wrap(_settings[slot] + ring - _rings[slot]);
+        _rings[slot] = ring;
+        resetOrigin();
     }
 
     /** Resets the rings of the Rotors used. */
     void resetRings() {
-        for (Rotor rotor: _allRotors) {
-            rotor.setRing(0);
-        }
+        Arrays.fill(_allRings, 0);
+        Arrays.fill(_rings, 0);
     }
 
 
@@ -134,50 +317,697 @@ class Machine {
      *  index in the range 0..alphabet size - 1), after first advancing
      *  the machine. */
     int convert(int c) {
-        Rotor firstRotor = _currRotors.get(_numRotors);
-        boolean rightAtNotch = firstRotor.atNotch();
-        firstRotor.advance();
-        for (int i = _numRotors - 1; i > 1; i -= 1) {
-            Rotor curr = _currRotors.get(i);
-            boolean currAtNotch = curr.atNotch();
-            if (curr.rotates() && rightAtNotch) {
-                curr.advance();
-                if (i + 1 < _numRotors) {
-                    _currRotors.get(i + 1).advance();
+        step();
+        return substitute(c);
+    }
+
+    /** Advance the machine by one keypress, without converting. */
+    void step() {
+        _position += 1;
+        int last = _numRotors - 1;
+        boolean rightAtNotch = atNotch(last);
+        advance(last);
+        for (int i = last - 1; i > 0; i -= 1) {
+            boolean currAtNotch = atNotch(i);
+            if (_moving[i] && rightAtNotch) {
+                advance(i);
+                if (i + 1 < last) {
+                    advance(i + 1);
                 }
             }
             rightAtNotch = currAtNotch;
         }
+    }
 
-        c = _alphabet.toInt(_plugboard.permute(_alphabet.toChar(c)));
-        for (int i = _numRotors; i >= 1; i -= 1) {
-            Rotor curr = _currRotors.get(i);
-            c = curr.convertForward(c);
+    /** Returns the result of converting the input character C (as an
+     *  index in the range 0..alphabet size - 1) at the machine's current
+     *  position, without advancing it. */
+    int substitute(int c) {
+        int last = _numRotors - 1;
+        c = _plugboard.permute(c);
+        for (int i = last; i >= 0; i -= 1) {
+            c = _forward[i].get(offset(i), c);
         }
-        for (int i = 1; i <= _numRotors; i += 1) {
-            Rotor curr = _currRotors.get(i);
-            if (curr.reflecting()) {
-                continue;
+        for (int i = 1; i <= last; i += 1) {
+            if (!_reflecting[i]) {
+                c = _backward[i].get(offset(i), c);
             }
-            c = curr.convertBackward(c);
         }
-        return _alphabet.toInt(_plugboard.permute(_alphabet.toChar(c)));
+        return _plugboard.permute(c);
+    }
+
+    /** Set OUT[c] to substitute(c) for each index c of my alphabet, at
+     *  my current rotor positions.  Tabulating a whole substitution this
+     *  way reads each rotor's offset once rather than once per index. */
+    void substituteAll(int[] out) {
+        int size = _alphabet.size(), last = _numRotors - 1;
+        for (int c = 0; c < size; c += 1) {
+            out[c] = _plugboard.permute(c);
+        }
+        for (int i = last; i >= 0; i -= 1) {
+            WiringTable table = _forward[i];
+            int offset = offset(i);
+            for (int c = 0; c < size; c += 1) {
+                out[c] = table.get(offset, out[c]);
+            }
+        }
+        for (int i = 1; i <= last; i += 1) {
+            if (!_reflecting[i]) {
+                WiringTable table = _backward[i];
+                int offset = offset(i);
+                for (int c = 0; c < size; c += 1) {
+                    out[c] = table.get(offset, out[c]);
+                }
+            }
+        }
+        for (int c = 0; c < size; c += 1) {
+            out[c] = _plugboard.permute(out[c]);
+        }
+    }
+
+    /** Return a CompiledMachine that continues from my current state,
+     *  with my current rotors, rings and plugboard.  My own state is not
+     *  changed. */
+    CompiledMachine compile() {
+        if (_plugboard == null) {
+            throw error("No plugboard set");
+        }
+        if (_alphabet.size() > Alphabet.BYTE_SIZE) {
+            throw error("Compiling needs an alphabet of at most %d symbols",
+                        Alphabet.BYTE_SIZE);
+        }
+        int size = _alphabet.size();
+        if (!packable()) {
+            throw error("Too many moving rotors to compile");
+        }
+        int[] saved = _settings.clone();
+        long savedPosition = _position;
+        HashMap<Long, Integer> seen = new HashMap<>();
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        try {
+            for (int count = 0; true; count += 1) {
+                step();
+                Integer loop = seen.putIfAbsent(positionKey(), count);
+                if (loop != null) {
+                    return new CompiledMachine(_alphabet, table.toByteArray(),
+                                               loop);
+                }
+                if ((long) (count + 1) * size > CompiledMachine.MAX_BYTES) {
+                    throw error("Too many rotor positions to compile");
+                }
+                for (int c = 0; c < size; c += 1) {
+                    table.write(substitute(c));
+                }
+            }
+        } finally {
+            _settings = saved;
+            _position = savedPosition;
+        }
+    }
+
+    /** Return the number of keypresses since my rotors were last set
+     *  (by insertRotors, setRotors or shiftRing).  seek(0) returns them
+     *  to where they were then, but does not set a new origin. */
+    long position() {
+        return _position;
+    }
+
+    /** Put my rotors in the positions they reach N >= 0 keypresses after
+     *  they were last set by insertRotors or setRotors, so that
+     *  position() == N.  N may be smaller than position().
+     *  The rotor positions reached from a given start eventually repeat
+     *  every so many keypresses.  The first call after the rotors are
+     *  set finds that cycle, recording the positions once every
+     *  alphabet-size keypresses (at most a few hundred records for
+     *  three 26-letter moving rotors).  After that, any N costs one
+     *  lookup plus a jump (see jump) of fewer than alphabet-size
+     *  keypresses.  If the cycle is too long to record, positions past
+     *  the last record are reached by jumping from it. */
+    void seek(long n) {
+        if (n < 0) {
+            throw error("Cannot seek to a negative position");
+        }
+        if (_revolutions == null) {
+            findRevolutions();
+        }
+        int size = _alphabet.size();
+        long q = n / size;
+        int count = _revolutions.length;
+        long start;
+        if (count == 0) {
+            System.arraycopy(_origin, 0, _settings, 0, _origin.length);
+            start = 0;
+        } else if (q < count || _loop >= 0) {
+            long index = q < count
+                ? q : _loop + (q - _loop) % (count - _loop);
+            unpack(_revolutions[(int) index]);
+            start = q * size;
+        } else {
+            unpack(_revolutions[count - 1]);
+            start = (long) (count - 1) * size;
+        }
+        _position = start;
+        jump(n - start);
+    }
+
+    /** Advance the machine by N >= 0 keypresses, leaving it as N calls
+     *  of step() would.  The two rightmost rotors turn as an odometer
+     *  (the rightmost every keypress, the next once per notch of the
+     *  rightmost) until some rotor further left moves, which happens
+     *  only when the second rotor reaches a notch, or a rotor further
+     *  left is at one.  Each such run is computed in one go (see
+     *  glide), and only the keypresses that move the other rotors are
+     *  stepped, so this costs about one step() for every turn of the
+     *  second rotor past a notch rather than one per keypress. */
+    private void jump(long n) {
+        long end = _position + n;
+        while (n > 0) {
+            if (carrying()) {
+                step();
+                n -= 1;
+            } else {
+                n -= glide(n);
+            }
+        }
+        _position = end;
+    }
+
+    /** Return true iff the next keypress will move some rotor to the
+     *  left of my two rightmost, or move the second one twice: that is,
+     *  iff some rotor other than the rightmost is at a notch and has a
+     *  moving rotor to its left. */
+    private boolean carrying() {
+        for (int i = 2; i < _numRotors - 1; i += 1) {
+            if (_moving[i - 1] && atNotch(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Advance my two rightmost rotors as the next keypresses would, up
+     *  to N > 0 of them, stopping just before one at which carrying()
+     *  is true, which must not be true now.  Returns the number of
+     *  keypresses taken, at least 1. */
+    private long glide(long n) {
+        int right = _numRotors - 1, second = right - 1;
+        if (!_moving[right]) {
+            return n;
+        }
+        long carries = 0;
+        if (_moving[second]) {
+            int toNotch = _slots[second].toNotch(_settings[second]);
+            if (toNotch > 0 && _moving[second - 1]) {
+                n = Math.min(n, keypressesToCarry(right, toNotch));
+            }
+            carries = carries(right, n);
+            _settings[second] =
+                (int) ((_settings[second] + carries) % _alphabet.size());
+        }
+        _settings[right] = (int) ((_settings[right] + n) % _alphabet.size());
+        return n;
+    }
+
+    /** Return how many of the next N keypresses find the rotor in SLOT,
+     *  which advances once per keypress, at a notch beforehand (and so
+     *  carry the rotor to its left). */
+    private long carries(int slot, long n) {
+        RotorSpec rotor = _slots[slot];
+        int size = _alphabet.size(), from = _settings[slot];
+        int rest = (int) (n % size), to = from + rest;
+        long result = n / size * rotor.numNotches();
+        if (to <= size) {
+            return result + rotor.notchesBelow(to) - rotor.notchesBelow(from);
+        }
+        return result + rotor.numNotches() - rotor.notchesBelow(from)
+            + rotor.notchesBelow(to - size);
+    }
+
+    /** Return the number of keypresses after which the rotor in SLOT,
+     *  which advances once per keypress, has carried K > 0 times (see
+     *  carries), or Long.MAX_VALUE if it has no notches. */
+    private long keypressesToCarry(int slot, long k) {
+        RotorSpec rotor = _slots[slot];
+        int numNotches = rotor.numNotches(), from = _settings[slot];
+        if (numNotches == 0) {
+            return Long.MAX_VALUE;
+        }
+        long turns = (k - 1) / numNotches;
+        int j = rotor.notchesBelow(from) + (int) ((k - 1) % numNotches);
+        int notch = j < numNotches ? rotor.notch(j)
+            : rotor.notch(j - numNotches) + _alphabet.size();
+        return turns * _alphabet.size() + notch - from + 1;
+    }
+
+    /** Make my current rotor positions the origin of position() and
+     *  seek(), forgetting the recorded revolutions of the old origin. */
+    private void resetOrigin() {
+        _position = 0;
+        if (_origin == null || _origin.length != _settings.length) {
+            _origin = new int[_settings.length];
+        }
+        System.arraycopy(_settings, 0, _origin, 0, _settings.length);
+        _revolutions = null;
+    }
+
+    /** Record in _revolutions the packed rotor positions at every
+     *  alphabet-size keypresses from the origin, until they repeat (and
+     *  set _loop to the first repeated record) or the step budget is
+     *  spent (and set _loop to -1). */
+    private void findRevolutions() {
+        int size = _alphabet.size();
+        int[] saved = _settings.clone();
+        long savedPosition = _position;
+        long[] records = new long[16];
+        int count = 0;
+        _loop = -1;
+        if (packable()) {
+            System.arraycopy(_origin, 0, _settings, 0, _origin.length);
+            HashMap<Long, Integer> seen = new HashMap<>();
+            while ((long) count * size < MAX_SEEK_STEPS) {
+                long key = positionKey();
+                Integer loop = seen.putIfAbsent(key, count);
+                if (loop != null) {
+                    _loop = loop;
+                    break;
+                }
+                if (count == records.length) {
+                    records = Arrays.copyOf(records, 2 * count);
+                }
+                records[count] = key;
+                count += 1;
+                jump(size);
+            }
+        }
+        _revolutions = Arrays.copyOf(records, count);
+        _settings = saved;
+        _position = savedPosition;
+    }
+
+    /** Set the settings of my moving rotors from KEY, as packed by
+     *  positionKey(). */
+    private void unpack(long key) {
+        int size = _alphabet.size();
+        for (int i = _settings.length - 1; i >= 0; i -= 1) {
+            if (_moving[i]) {
+                _settings[i] = (int) (key % size);
+                key /= size;
+            }
+        }
+    }
+
+    /** Return true iff positionKey() fits the settings of all my moving
+     *  rotors in a long. */
+    private boolean packable() {
+        int moving = 0;
+        for (boolean m : _moving) {
+            moving += m ? 1 : 0;
+        }
+        return moving * Math.log(_alphabet.size())
+            < Math.log(Long.MAX_VALUE);
+    }
+
+    /** Return the settings of my moving rotors packed into one number.
+     *  Only they change as the machine steps. */
+    private long positionKey() {
+        long key = 0;
+        for (int i = 0; i < _settings.length; i += 1) {
+            if (_moving[i]) {
+                key = key * _alphabet.size() + _settings[i];
+            }
+        }
+        return key;
+    }
+
+    /** Return true iff the rotor in SLOT is at one of its notches. */
+    private boolean atNotch(int slot) {
+        return _moving[slot] && _slots[slot].notchAt(_settings[slot]);
+    }
+
+    /** Advance the rotor in SLOT one position, if it rotates. */
+    private void advance(int slot) {
+        if (_moving[slot]) {
+            int s = _settings[slot] + 1;
+            _settings[slot] = s == _alphabet.size() ? 0 : s;
+        }
+    }
+
+    /** Return the setting minus the ring of the rotor in SLOT, modulo
+     *  the alphabet size: the row of its wiring tables in use. */
+    int offset(int slot) {
+        int d = _settings[slot] - _rings[slot];
+        return d + ((d >> 31) & _alphabet.size());
+    }
+
+    /** Return P modulo the alphabet size. */
+    private int wrap(int p) {
+        int r = p % _alphabet.size();
+        return r < 0 ? r + _alphabet.size() : r;
     }
 
     /** Returns the encoding/decoding of MSG, updating the state of
      *  the rotors accordingly. */
     String convert(String msg) {
-        String result = "";
-        for (int i = 0; i < msg.length(); i += 1) {
-            char currChar = msg.charAt(i);
+        return convert((CharSequence) msg);
+    }
+
+    /** Returns the encoding/decoding of MSG, updating the state of
+     *  the rotors accordingly. */
+    String convert(CharSequence msg) {
+        char[] result = new char[msg.length()];
+        convertChars(msg, 0, result.length, result, 0);
+        return new String(result);
+    }
+
+    /** Appends the encoding/decoding of MSG to OUT, updating the state of
+     *  the rotors accordingly.  MSG is converted through a fixed-size
+     *  buffer, so this needs no storage proportional to its length. */
+    void convert(CharSequence msg, Appendable out) throws IOException {
+        char[] buffer = new char[Math.min(msg.length(), APPEND_BUFFER)];
+        for (int start = 0; start < msg.length(); start += buffer.length) {
+            int len = Math.min(buffer.length, msg.length() - start);
+            convertChars(msg, start, len, buffer, 0);
+            if (out instanceof Writer) {
+                ((Writer) out).write(buffer, 0, len);
+            } else {
+                out.append(CharBuffer.wrap(buffer, 0, len));
+            }
+        }
+    }
+
+    /** Returns the encoding/decoding of MSG, as convert(MSG) would, and
+     *  leaves the rotors as convert(MSG) would.  Since the machine's
+     *  state after any number of keypresses can be found quickly (see
+     *  jump), MSG is split into chunks that are converted concurrently
+     *  on POOL, each by a copy of this machine jumped to the chunk's
+     *  start from the start of the range it was split from.  MSG is
+     *  checked against my alphabet before anything is converted. */
+    String convertParallel(CharSequence msg, ForkJoinPool pool) {
+        int len = msg.length();
+        for (int i = 0; i < len; i += 1) {
+            if (!_alphabet.contains(msg.charAt(i))) {
+                throw error("Contains characters not in alphabet");
+            }
+        }
+        char[] result = new char[len];
+        int chunk = Math.max(MIN_PARALLEL_CHUNK,
+                             len / (PARALLEL_SPLIT * pool.getParallelism()));
+        pool.invoke(new ParallelConvert(copy(), msg, result, 0, len,
+                                        chunk));
+        jump(len);
+        return new String(result);
+    }
+
+    /** A task that converts part of a message for convertParallel. */
+    private class ParallelConvert extends RecursiveAction {
+
+        /** Converts MSG[START..END) into RESULT with PART, a machine at
+         *  the keypress for MSG[START], splitting the work into tasks of
+         *  no more than CHUNK characters. */
+        ParallelConvert(Machine part, CharSequence msg, char[] result,
+                        int start, int end, int chunk) {
+            _part = part;
+            _msg = msg;
+            _result = result;
+            _start = start;
+            _end = end;
+            _chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (_end - _start > _chunk) {
+                int mid = (_start + _end) >>> 1;
+                Machine right = _part.copy();
+                right.jump(mid - _start);
+                invokeAll(new ParallelConvert(_part, _msg, _result, _start,
+                                              mid, _chunk),
+                          new ParallelConvert(right, _msg, _result, mid,
+                                              _end, _chunk));
+                return;
+            }
+            _part.convertChars(_msg, _start, _end - _start, _result,
+                               _start);
+        }
+
+        /** Machine that converts my range, starting at its first
+         *  keypress. */
+        private final Machine _part;
+
+        /** Message being converted. */
+        private final CharSequence _msg;
+
+        /** Where the whole conversion goes. */
+        private final char[] _result;
+
+        /** The range of _msg I convert. */
+        private final int _start, _end;
+
+        /** Largest range converted without splitting. */
+        private final int _chunk;
+    }
+
+    /** Replaces the contents of FILE with their encoding/decoding,
+     *  working on memory-mapped regions of the file concurrently on POOL,
+     *  and leaves the rotors as if the bytes had been converted in order.
+     *  My alphabet must be Alphabet.bytes(). */
+    void convertFile(Path file, ForkJoinPool pool) throws IOException {
+        checkBytes();
+        try (FileChannel channel = FileChannel.open(
+                 file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            convertMapped(channel, channel, pool);
+        }
+    }
+
+    /** Writes the encoding/decoding of the contents of IN to the file OUT,
+     *  creating or replacing it, as for convertFile(IN, POOL).  If OUT is
+     *  IN (by any path), IN is converted in place. */
+    void convertFile(Path in, Path out, ForkJoinPool pool)
+        throws IOException {
+        checkBytes();
+        if (Files.exists(out) && Files.isSameFile(in, out)) {
+            convertFile(in, pool);
+            return;
+        }
+        try (FileChannel source = FileChannel.open(in,
+                                                   StandardOpenOption.READ);
+             FileChannel dest = FileChannel.open(
+                 out, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                 StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = source.size();
+            if (size > 0) {
+                dest.write(ByteBuffer.allocate(1), size - 1);
+            }
+            convertMapped(source, dest, pool);
+        }
+    }
+
+    /** Converts the contents of SOURCE into DEST, which is at least as
+     *  long and may be the same channel, as for convertFile.  Each
+     *  region is mapped and converted by its own copy of this machine,
+     *  jumped to the region's start as for convertParallel. */
+    private void convertMapped(FileChannel source, FileChannel dest,
+                               ForkJoinPool pool) throws IOException {
+        long size = source.size();
+        long chunk = Math.max(MIN_MAPPED_CHUNK,
+                              size / (PARALLEL_SPLIT
+                                      * pool.getParallelism()));
+        chunk = Math.min(chunk, MAX_MAPPED_CHUNK);
+        try {
+            pool.invoke(new MappedConvert(copy(), source, dest, 0, size,
+                                          chunk));
+        } catch (UncheckedIOException excp) {
+            throw excp.getCause();
+        }
+        jump(size);
+    }
+
+    /** A task that converts a region of a file for convertFile. */
+    private class MappedConvert extends RecursiveAction {
+
+        /** Converts bytes START..END-1 of SOURCE into the same bytes of
+         *  DEST with PART, a machine at the keypress for byte START,
+         *  splitting the work into tasks of no more than CHUNK bytes. */
+        MappedConvert(Machine part, FileChannel source, FileChannel dest,
+                      long start, long end, long chunk) {
+            _part = part;
+            _source = source;
+            _dest = dest;
+            _start = start;
+            _end = end;
+            _chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (_end - _start > _chunk) {
+                long mid = (_start + _end) >>> 1;
+                Machine right = _part.copy();
+                right.jump(mid - _start);
+                invokeAll(new MappedConvert(_part, _source, _dest, _start,
+                                            mid, _chunk),
+                          new MappedConvert(right, _source, _dest, mid,
+                                            _end, _chunk));
+                return;
+            }
+            try {
+                MappedByteBuffer out =
+                    _dest.map(FileChannel.MapMode.READ_WRITE, _start,
+                              _end - _start);
+                ByteBuffer in = _source == _dest ? out.duplicate()
+                    : _source.map(FileChannel.MapMode.READ_ONLY, _start,
+                                  _end - _start);
+                _part.convert(in, out);
+            } catch (IOException excp) {
+                throw new UncheckedIOException(excp);
+            }
+        }
+
+        /** Machine that converts my range, starting at its first
+         *  keypress. */
+        private final Machine _part;
+
+        /** Channels converted from and to. */
+        private final FileChannel _source, _dest;
+
+        /** The range of bytes I convert. */
+        private final long _start, _end;
+
+        /** Largest range converted without splitting. */
+        private final long _chunk;
+    }
+
+    /** Converts the LEN characters of MSG starting at START into OUT
+     *  starting at OUTOFF, updating the state of the rotors accordingly.
+     *  Stops with an error at the first character that is not in my
+     *  alphabet, leaving the rotors as they were after the one before. */
+    private void convertChars(CharSequence msg, int start, int len,
+                              char[] out, int outOff) {
+        for (int i = 0; i < len; i += 1) {
+            char currChar = msg.charAt(start + i);
             if (!_alphabet.contains(currChar)) {
                 throw error("Contains characters not in alphabet");
             }
-            result += _alphabet.toChar(convert(_alphabet.toInt(currChar)));
+            out[outOff + i] =
+                _alphabet.toChar(convert(_alphabet.toInt(currChar)));
         }
+    }
+
+    /** Converts the LEN characters of IN starting at OFF, writing the
+     *  result into OUT starting at OUTOFF and updating the state of the
+     *  rotors accordingly.  IN and OUT may be the same array.  All LEN
+     *  characters are checked against my alphabet before any is
+     *  converted, and the conversion itself allocates nothing. */
+    void convert(char[] in, int off, int len, char[] out, int outOff) {
+        checkRange(in.length, off, len, out.length, outOff);
+        for (int i = off; i < off + len; i += 1) {
+            if (!_alphabet.contains(in[i])) {
+                throw error("Contains characters not in alphabet");
+            }
+        }
+        for (int i = 0; i < len; i += 1) {
+            int c = convert(_alphabet.toInt(in[off + i]));
+            out[outOff + i] = _alphabet.toChar(c);
+        }
+    }
+
+    /** Converts the LEN indices (each in 0..alphabet size - 1) of IN
+     *  starting at OFF, writing the resulting indices into OUT starting
+     *  at OUTOFF and updating the state of the rotors accordingly.  IN
+     *  and OUT may be the same array.  All LEN indices are checked before
+     *  any is converted, and the conversion itself allocates nothing. */
+    void convert(int[] in, int off, int len, int[] out, int outOff) {
+        checkRange(in.length, off, len, out.length, outOff);
+        int size = _alphabet.size();
+        for (int i = off; i < off + len; i += 1) {
+            if (in[i] < 0 || in[i] >= size) {
+                throw error("Index %d is not in alphabet", in[i]);
+            }
+        }
+        for (int i = 0; i < len; i += 1) {
+            out[outOff + i] = convert(in[off + i]);
+        }
+    }
+
+    /** Check that LEN elements starting at OFF fit in an input array of
+     *  length INLENGTH, and starting at OUTOFF in an output array of
+     *  length OUTLENGTH. */
+    private static void checkRange(int inLength, int off, int len,
+                                   int outLength, int outOff) {
+        if (off < 0 || len < 0 || outOff < 0 || off > inLength - len
+            || outOff > outLength - len) {
+            throw error("Conversion range out of bounds");
+        }
+    }
+
+    /** Converts the LEN bytes of IN starting at OFF, writing the result
+     *  into OUT starting at OUTOFF and updating the state of the rotors
+     *  accordingly.  IN and OUT may be the same array.  My alphabet must
+     *  be Alphabet.bytes(). */
+    void convert(byte[] in, int off, int len, byte[] out, int outOff) {
+        checkBytes();
+        checkRange(in.length, off, len, out.length, outOff);
+        for (int i = 0; i < len; i += 1) {
+            out[outOff + i] = (byte) convert(in[off + i] & BYTE_MASK);
+        }
+    }
+
+    /** Returns the encoding/decoding of the bytes MSG, updating the state
+     *  of the rotors accordingly.  My alphabet must be Alphabet.bytes(). */
+    byte[] convert(byte[] msg) {
+        byte[] result = new byte[msg.length];
+        convert(msg, 0, msg.length, result, 0);
         return result;
     }
 
+    /** Converts the remaining bytes of IN into OUT, advancing the
+     *  positions of both buffers and updating the state of the rotors
+     *  accordingly.  OUT must have room for IN.remaining() bytes, and my
+     *  alphabet must be Alphabet.bytes(). */
+    void convert(ByteBuffer in, ByteBuffer out) {
+        checkBytes();
+        if (out.remaining() < in.remaining()) {
+            throw error("Output buffer too small");
+        }
+        if (in.hasArray() && out.hasArray()) {
+            int len = in.remaining();
+            convert(in.array(), in.arrayOffset() + in.position(), len,
+                    out.array(), out.arrayOffset() + out.position());
+            in.position(in.position() + len);
+            out.position(out.position() + len);
+            return;
+        }
+        while (in.hasRemaining()) {
+            out.put((byte) convert(in.get() & BYTE_MASK));
+        }
+    }
+
+    /** Check that my alphabet is the byte alphabet. */
+    private void checkBytes() {
+        if (!_alphabet.isBytes()) {
+            throw error("Byte conversion needs the byte alphabet");
+        }
+    }
+
+    /** Smallest chunk convertParallel hands to a task. */
+    private static final int MIN_PARALLEL_CHUNK = 1 << 14;
+
+    /** Smallest and largest regions convertFile maps at once.  A mapped
+     *  buffer holds at most Integer.MAX_VALUE bytes. */
+    private static final long MIN_MAPPED_CHUNK = 1 << 20,
+        MAX_MAPPED_CHUNK = 1 << 28;
+
+    /** Number of chunks convertParallel and convertFile aim for per
+     *  pool thread. */
+    private static final int PARALLEL_SPLIT = 4;
+
+    /** Size of the buffer convert(CharSequence, Appendable) works in. */
+    private static final int APPEND_BUFFER = 8192;
+
+    /** Mask that turns a byte into its (unsigned) byte-alphabet index. */
+    private static final int BYTE_MASK = 0xFF;
+
     /** Common alphabet of my rotors. */
     private final Alphabet _alphabet;
 
@@ -190,9 +1020,45 @@ class Machine {
     /** Permutation representing the plugboard.*/
     private Permutation _plugboard;
 
-    /** Collection of all available Rotors.*/
-    private Collection<Rotor> _allRotors;
+    /** All available rotors.*/
+    private RotorSpec[] _catalog;
+
+    /** Settings and rings of the rotors of _catalog when they are not in
+     *  a slot. */
+    private int[] _allSettings, _allRings;
+
+    /** Rotors currently in slots, reflector (slot 0) first.  The arrays
+     *  below are parallel to it, and hold this machine's state for the
+     *  rotors; the specs themselves are immutable and may be shared. */
+    private RotorSpec[] _slots;
+
+    /** Index in _catalog of the rotor in each slot. */
+    private int[] _slotIndex;
+
+    /** Setting and ring of the rotor in each slot. */
+    private int[] _settings, _rings;
+
+    /** Whether the rotor in each slot rotates, and whether it reflects. */
+    private boolean[] _moving, _reflecting;
+
+    /** Forward and backward wiring tables of the rotor in each slot. */
+    private WiringTable[] _forward, _backward;
+
+    /** Keypresses since _origin. */
+    private long _position;
+
+    /** Settings of my slots when my rotors were last set. */
+    private int[] _origin;
+
+    /** Packed positions (see positionKey) of my moving rotors every
+     *  alphabet-size keypresses from _origin, or null if not yet found.
+     *  Empty if the positions cannot be packed. */
+    private long[] _revolutions;
+
+    /** Index of the record that follows the last of _revolutions, or -1
+     *  if the step budget ran out before the positions repeated. */
+    private int _loop;
 
-    /** HashMap of all current Rotors in slots.*/
-    private HashMap<Integer, Rotor> _currRotors;
+    /** Most keypresses over which findRevolutions records positions. */
+    private static final long MAX_SEEK_STEPS = 1L << 20;
 }
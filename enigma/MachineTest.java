@@ -0,0 +1,226 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Machine class.
+ *  @author Daric Lim
+ */
+public class MachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** Return MACHINE's substitution at its current position. */
+    private int[] substitution(Machine machine) {
+        int[] result = new int[machine.alphabet().size()];
+        machine.substituteAll(result);
+        return result;
+    }
+
+    /** Check that seeking copies of MACHINE to each of POSITIONS (in
+     *  increasing order) leaves them where stepping MACHINE there
+     *  does. */
+    private void checkSeek(String testId, Machine machine,
+                           long... positions) {
+        Machine stepped = machine.copy();
+        for (long n : positions) {
+            while (stepped.position() < n) {
+                stepped.step();
+            }
+            Machine sought = machine.copy();
+            sought.seek(n);
+            assertEquals(msg(testId, "position"), n, sought.position());
+            assertArrayEquals(msg(testId, "substitution at %d", n),
+                              substitution(stepped), substitution(sought));
+        }
+    }
+
+    @Test
+    public void seekNavalTest() {
+        Machine machine =
+            navalMachine(new String[] { "B", "Beta", "VI", "II", "VIII" },
+                         "(AQ) (HR)");
+        machine.setRings("AXQE");
+        machine.setRotors("AMDY");
+        checkSeek("seekNaval", machine, 0, 1, 25, 26, 27, 675, 677, 16899,
+                  16900, 16901, 100003, 1234567);
+    }
+
+    @Test
+    public void seekBackwardTest() {
+        Machine machine =
+            navalMachine(new String[] { "C", "IV", "V", "I" }, "");
+        machine.setRotors("XZQ");
+        Machine sought = machine.copy();
+        sought.seek(5000);
+        sought.seek(17);
+        checkSeek("seekBackward", sought, 17);
+        for (int i = 0; i < 17; i += 1) {
+            machine.step();
+        }
+        assertArrayEquals(substitution(machine), substitution(sought));
+    }
+
+    @Test
+    public void seekLongPeriodTest() {
+        Machine machine = randomMachine(Alphabet.bytes(), 4, 2, 1);
+        checkSeek("seekLongPeriod", machine, 255, 256, 65535, 65536,
+                  1000003, 3000017);
+    }
+
+    @Test
+    public void seekManyNotchesTest() {
+        Machine machine = randomMachine(new Alphabet("ABCDEF"), 3, 4, 2);
+        checkSeek("seekManyNotches", machine, 1, 2, 3, 5, 7, 11, 13, 100,
+                  1001, 10007);
+    }
+
+    @Test
+    public void seekFarTest() {
+        Machine machine = randomMachine(Alphabet.bytes(), 4, 2, 3);
+        long far = 1000000007L;
+        Machine near = machine.copy();
+        near.seek(far - 100000);
+        for (int i = 0; i < 100000; i += 1) {
+            near.step();
+        }
+        machine.seek(far);
+        assertArrayEquals(substitution(near), substitution(machine));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void seekNegativeTest() {
+        randomMachine(new Alphabet("AB"), 1, 1, 0).seek(-1);
+    }
+
+    /** Return LENGTH characters of ALPHA drawn from SEED. */
+    private String randomText(Alphabet alpha, int length, long seed) {
+        Random random = new Random(seed);
+        char[] result = new char[length];
+        for (int i = 0; i < length; i += 1) {
+            result[i] = alpha.toChar(random.nextInt(alpha.size()));
+        }
+        return new String(result);
+    }
+
+    /** Check that converting MSG with a copy of MACHINE on POOL gives
+     *  what converting it in order does, and leaves the machine in the
+     *  same state. */
+    private void checkConvertParallel(String testId, Machine machine,
+                                      String msg, ForkJoinPool pool) {
+        Machine serial = machine.copy(), parallel = machine.copy();
+        assertEquals(msg(testId, "result"), serial.convert(msg),
+                     parallel.convertParallel(msg, pool));
+        assertEquals(msg(testId, "position"), serial.position(),
+                     parallel.position());
+        assertArrayEquals(msg(testId, "state"), substitution(serial),
+                          substitution(parallel));
+    }
+
+    @Test
+    public void convertParallelTest() {
+        Machine naval =
+            navalMachine(new String[] { "B", "Beta", "VI", "II", "VIII" },
+                         "(AQ) (HR)");
+        naval.setRings("AXQE");
+        naval.setRotors("AMDY");
+        naval.convert(ENGLISH);
+        Alphabet alpha = new Alphabet("ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+                                      + "abcdefghijklmnopqrstuvwxyz");
+        Machine busy = randomMachine(alpha, 4, 5, 8);
+        ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+        try {
+            checkConvertParallel("convertParallelNaval", naval,
+                                 randomText(UPPER, 300007, 9), pool);
+            checkConvertParallel("convertParallelBusy", busy,
+                                 randomText(alpha, 200003, 10), pool);
+            checkConvertParallel("convertParallelShort", naval, ENGLISH,
+                                 pool);
+            checkConvertParallel("convertParallelEmpty", naval, "", pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void convertParallelAlphabetTest() {
+        navalMachine(new String[] { "B", "III", "II", "I" }, "")
+            .convertParallel("HELLO WORLD", ForkJoinPool.commonPool());
+    }
+
+    /** Return LENGTH bytes drawn from SEED. */
+    private byte[] randomBytes(int length, long seed) {
+        byte[] result = new byte[length];
+        new Random(seed).nextBytes(result);
+        return result;
+    }
+
+    /** Check that converting FILE, which holds DATA, into OUT with a
+     *  copy of MACHINE on POOL gives what converting DATA in order does,
+     *  and leaves the machine in the same state. */
+    private void checkConvertFile(String testId, Machine machine,
+                                  byte[] data, Path file, Path out,
+                                  ForkJoinPool pool) throws IOException {
+        Files.write(file, data);
+        Machine serial = machine.copy(), mapped = machine.copy();
+        byte[] expected = serial.convert(data);
+        if (out == null) {
+            mapped.convertFile(file, pool);
+            out = file;
+        } else {
+            mapped.convertFile(file, out, pool);
+        }
+        assertArrayEquals(msg(testId, "contents"), expected,
+                          Files.readAllBytes(out));
+        assertEquals(msg(testId, "position"), serial.position(),
+                     mapped.position());
+        assertArrayEquals(msg(testId, "state"), substitution(serial),
+                          substitution(mapped));
+    }
+
+    @Test
+    public void convertFileTest() throws IOException {
+        Machine machine = randomMachine(Alphabet.bytes(), 4, 2, 5);
+        machine.convert(new byte[7]);
+        byte[] data = randomBytes(3 * (1 << 20) + 17, 6);
+        ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+        Path dir = Files.createTempDirectory("convert");
+        Path in = dir.resolve("in"), out = dir.resolve("out");
+        try {
+            checkConvertFile("convertFile", machine, data, in, out, pool);
+            checkConvertFile("convertFileInPlace", machine, data, in, null,
+                             pool);
+            checkConvertFile("convertFileSame", machine, data, in, in, pool);
+            checkConvertFile("convertFileAlias", machine, data, in,
+                             dir.resolve(".").resolve("in"), pool);
+            checkConvertFile("convertFileEmpty", machine, new byte[0], in,
+                             out, pool);
+        } finally {
+            pool.shutdown();
+            Files.deleteIfExists(in);
+            Files.deleteIfExists(out);
+            Files.delete(dir);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void convertFileAlphabetTest() throws IOException {
+        navalMachine(new String[] { "B", "III", "II", "I" }, "")
+            .convertFile(Path.of("unused"), ForkJoinPool.commonPool());
+    }
+
+    /** Number of threads in the pools of parallel tests. */
+    private static final int PARALLELISM = 4;
+}
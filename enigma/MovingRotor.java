@@ -1,7 +1,5 @@
 package enigma;
 
-import java.util.ArrayList;
-
 import static enigma.EnigmaException.*;
 
 /** Class that represents a rotating rotor in the enigma machine.
@@ -16,11 +14,9 @@ class MovingRotor extends Rotor {
      */
     MovingRotor(String name, Permutation perm, String notches) {
         super(name, perm);
-        _notches = new ArrayList<Integer>();
+        _notches = new boolean[size()];
         for (int i = 0; i < notches.length(); i += 1) {
-            _notches.add(permutation().wrap(
-                    alphabet().toInt(
-                            notches.charAt(i)) - getRing()));
+            _notches[alphabet().toInt(notches.charAt(i))] = true;
         }
     }
 
@@ -30,8 +26,8 @@ class MovingRotor extends Rotor {
     }
 
     @Override
-    boolean atNotch() {
-        return _notches.contains(setting());
+    boolean notchAt(int posn) {
+        return _notches[posn];
     }
 
     @Override
@@ -39,6 +35,6 @@ class MovingRotor extends Rotor {
         set(setting() + 1 + getRing());
     }
 
-    /** List of all notches in rotor.*/
-    private ArrayList<Integer> _notches;
+    /** _notches[P] is true iff setting P is a notch.*/
+    private final boolean[] _notches;
 }
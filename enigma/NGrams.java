@@ -0,0 +1,321 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import static enigma.EnigmaException.*;
+
+/** Log-probabilities of the n-grams (runs of N consecutive characters) of
+ *  a language, for scoring candidate decryptions.  They are stored in a
+ *  flat table indexed by the n-gram read as a base-(alphabet size)
+ *  number, first character most significant, so scoring a text of
+ *  indices is one table load per n-gram.  N-grams never seen get a
+ *  floor probability well below that of any n-gram that was.
+ *  Statistics can be saved in a compact binary file (see save) and
+ *  loaded from it by memory-mapping, so that loading takes no time and
+ *  processes that load the same file share one copy of the table.
+ *  @author Daric Lim
+ */
+class NGrams {
+
+    /** N-gram statistics of length N over ALPHABET, where COUNTS[K] is
+     *  the number of times the n-gram with index K was seen. */
+    NGrams(Alphabet alphabet, int n, long[] counts) {
+        this(alphabet, n, checkedEntries(alphabet, n));
+        if (counts.length != _logProbs.capacity()) {
+            throw error("Need %d n-gram counts", _logProbs.capacity());
+        }
+        long total = 0;
+        for (long count : counts) {
+            if (count < 0) {
+                throw error("Negative n-gram count");
+            }
+            total += count;
+        }
+        if (total == 0) {
+            throw error("No n-grams counted");
+        }
+        double floor = Math.log10(FLOOR / total);
+        for (int k = 0; k < counts.length; k += 1) {
+            _logProbs.put(k, (float) (counts[k] == 0 ? floor
+                                      : Math.log10((double) counts[k]
+                                                   / total)));
+        }
+    }
+
+    /** Empty statistics of length N over ALPHABET, with ENTRIES (= size
+     *  ** N) n-grams. */
+    private NGrams(Alphabet alphabet, int n, int entries) {
+        this(alphabet, n, FloatBuffer.allocate(entries));
+    }
+
+    /** Statistics of length N over ALPHABET whose log-probabilities are
+     *  LOGPROBS, by index. */
+    private NGrams(Alphabet alphabet, int n, FloatBuffer logProbs) {
+        _alphabet = alphabet;
+        _n = n;
+        _logProbs = logProbs;
+    }
+
+    /** Returns the statistics of the N-grams of the text read from IN,
+     *  ignoring case.  Characters not in ALPHABET separate words, and no
+     *  n-gram spans them. */
+    static NGrams fromText(Reader in, Alphabet alphabet, int n)
+        throws IOException {
+        long[] counts = new long[checkedEntries(alphabet, n)];
+        int modulus = counts.length / alphabet.size();
+        int index = 0, run = 0;
+        for (int c = in.read(); c >= 0; c = in.read()) {
+            char ch = Character.toUpperCase((char) c);
+            if (!alphabet.contains(ch)) {
+                run = 0;
+                continue;
+            }
+            index = (index % modulus) * alphabet.size() + alphabet.toInt(ch);
+            run += 1;
+            if (run >= n) {
+                counts[index] += 1;
+            }
+        }
+        return new NGrams(alphabet, n, counts);
+    }
+
+    /** Returns the statistics in IN, which has one n-gram and its count
+     *  per line (as in "TION 13168375"), all n-grams of the same length.
+     *  N-grams not listed have count 0. */
+    static NGrams fromCounts(Reader in, Alphabet alphabet)
+        throws IOException {
+        BufferedReader lines = new BufferedReader(in);
+        long[] counts = null;
+        int n = 0;
+        for (String line = lines.readLine(); line != null;
+             line = lines.readLine()) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            if (fields.length != 2) {
+                throw error("Bad n-gram count line: %s", line);
+            }
+            if (counts == null) {
+                n = fields[0].length();
+                counts = new long[checkedEntries(alphabet, n)];
+            } else if (fields[0].length() != n) {
+                throw error("N-grams of different lengths");
+            }
+            try {
+                counts[index(alphabet, fields[0])] +=
+                    Long.parseLong(fields[1]);
+            } catch (NumberFormatException excp) {
+                throw error("Bad n-gram count: %s", fields[1]);
+            }
+        }
+        if (counts == null) {
+            throw error("No n-grams counted");
+        }
+        return new NGrams(alphabet, n, counts);
+    }
+
+    /** Returns the statistics saved in FILE by save, memory-mapped rather
+     *  than read.  The file must not change while they are in use. */
+    static NGrams load(Path file) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file,
+                                                    StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                               channel.size());
+        }
+        data.order(ORDER);
+        if (data.remaining() < HEADER_INTS * Integer.BYTES
+            || data.getInt() != MAGIC || data.getInt() != VERSION) {
+            throw error("%s is not an n-gram statistics file", file);
+        }
+        int n = data.getInt(), size = data.getInt();
+        if (size <= 0 || size > Alphabet.MAX_SIZE
+            || data.limit() < tableStart(size)) {
+            throw error("%s is damaged", file);
+        }
+        char[] chars = new char[size];
+        for (int i = 0; i < size; i += 1) {
+            chars[i] = data.getChar();
+        }
+        Alphabet alphabet = alphabet(chars);
+        int entries = checkedEntries(alphabet, n);
+        data.position(tableStart(size));
+        if (data.remaining() != (long) entries * Float.BYTES) {
+            throw error("%s is damaged", file);
+        }
+        return new NGrams(alphabet, n, data.slice().order(ORDER)
+                          .asFloatBuffer());
+    }
+
+    /** Writes my statistics to FILE, replacing it, in the form load
+     *  reads: a header of four ints (magic number, format version, n-gram
+     *  length and alphabet size), the alphabet's characters, padding to
+     *  a multiple of four bytes, and then the log-probabilities as
+     *  floats, by index.  All values are little-endian.  They are
+     *  written to a new file in the same directory, which then replaces
+     *  FILE in one atomic rename, so processes that have loaded (mapped)
+     *  the old FILE keep reading it intact, and none sees a partial
+     *  one. */
+    void save(Path file) throws IOException {
+        int size = _alphabet.size();
+        ByteBuffer header = ByteBuffer.allocate(tableStart(size)).order(ORDER);
+        header.putInt(MAGIC).putInt(VERSION).putInt(_n).putInt(size);
+        for (int i = 0; i < size; i += 1) {
+            header.putChar(_alphabet.toChar(i));
+        }
+        header.clear();
+        ByteBuffer table = ByteBuffer.allocate(WRITE_BUFFER).order(ORDER);
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(),
+                                         file.getFileName().toString(),
+                                         TEMP_SUFFIX);
+        try {
+            try (FileChannel channel = FileChannel.open(
+                     temp, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                int entries = _logProbs.capacity();
+                for (int k = 0; k < entries; k += 1) {
+                    table.putFloat(_logProbs.get(k));
+                    if (!table.hasRemaining() || k == entries - 1) {
+                        table.flip();
+                        while (table.hasRemaining()) {
+                            channel.write(table);
+                        }
+                        table.clear();
+                    }
+                }
+                channel.force(false);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the length of my n-grams. */
+    int length() {
+        return _n;
+    }
+
+    /** Return the log (base 10) probability of the n-gram with index
+     *  INDEX. */
+    float logProb(int index) {
+        return _logProbs.get(index);
+    }
+
+    /** Returns the sum of the log-probabilities of all the n-grams in the
+     *  LEN indices of TEXT starting at OFF, each in 0..alphabet size - 1.
+     *  Higher is more like the language.  Allocates nothing. */
+    double score(int[] text, int off, int len) {
+        int size = _alphabet.size();
+        int modulus = _logProbs.capacity() / size;
+        int index = 0;
+        double result = 0;
+        for (int i = 0; i < len; i += 1) {
+            if (i >= _n) {
+                index -= text[off + i - _n] * modulus;
+            }
+            index = index * size + text[off + i];
+            if (i >= _n - 1) {
+                result += _logProbs.get(index);
+            }
+        }
+        return result;
+    }
+
+    /** Return the index of the n-gram NGRAM, of characters in ALPHABET. */
+    private static int index(Alphabet alphabet, String ngram) {
+        int result = 0;
+        for (int i = 0; i < ngram.length(); i += 1) {
+            result = result * alphabet.size()
+                + alphabet.toInt(ngram.charAt(i));
+        }
+        return result;
+    }
+
+    /** Return the alphabet whose characters are CHARS. */
+    private static Alphabet alphabet(char[] chars) {
+        boolean bytes = chars.length == Alphabet.BYTE_SIZE;
+        for (int i = 0; bytes && i < chars.length; i += 1) {
+            bytes = chars[i] == i;
+        }
+        return bytes ? Alphabet.bytes() : new Alphabet(new String(chars));
+    }
+
+    /** Return the offset in a saved file of the table of an alphabet of
+     *  SIZE characters. */
+    private static int tableStart(int size) {
+        int start = HEADER_INTS * Integer.BYTES + size * Character.BYTES;
+        return (start + Float.BYTES - 1) / Float.BYTES * Float.BYTES;
+    }
+
+    /** Return the number of N-grams over ALPHABET, checking that they fit
+     *  in a table. */
+    private static int checkedEntries(Alphabet alphabet, int n) {
+        if (n < 1) {
+            throw error("N-grams must have at least one character");
+        }
+        long entries = 1;
+        for (int i = 0; i < n; i += 1) {
+            entries *= alphabet.size();
+            if (entries > MAX_ENTRIES) {
+                throw error("Too many %d-grams to tabulate", n);
+            }
+        }
+        return (int) entries;
+    }
+
+    /** Largest number of n-grams tabulated (26 ** 5 fits). */
+    static final int MAX_ENTRIES = 1 << 24;
+
+    /** First int of a saved file. */
+    private static final int MAGIC = 0x4E47524D;
+
+    /** Format version of saved files. */
+    private static final int VERSION = 1;
+
+    /** Number of ints in the header of a saved file. */
+    private static final int HEADER_INTS = 4;
+
+    /** Byte order of saved files. */
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /** Size of the buffer save writes the table through. */
+    private static final int WRITE_BUFFER = 1 << 16;
+
+    /** Suffix of the file save writes before renaming it. */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /** Count given to unseen n-grams, relative to the total count. */
+    private static final double FLOOR = 0.01;
+
+    /** Alphabet of my n-grams. */
+    private final Alphabet _alphabet;
+
+    /** Length of my n-grams. */
+    private final int _n;
+
+    /** Log (base 10) probability of each n-gram, by index: a heap
+     *  buffer over a float[] for statistics built in memory, or a view of
+     *  a mapped file for loaded ones. */
+    private final FloatBuffer _logProbs;
+}
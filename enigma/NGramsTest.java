@@ -0,0 +1,130 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the NGrams class.
+ *  @author Daric Lim
+ */
+public class NGramsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Check that A and B have the same alphabet, length and
+     *  log-probabilities. */
+    private void checkSame(String testId, NGrams a, NGrams b) {
+        assertEquals(msg(testId, "alphabet"), a.alphabet(), b.alphabet());
+        assertEquals(msg(testId, "length"), a.length(), b.length());
+        int entries = 1;
+        for (int i = 0; i < a.length(); i += 1) {
+            entries *= a.alphabet().size();
+        }
+        for (int k = 0; k < entries; k += 1) {
+            assertEquals(msg(testId, "n-gram %d", k),
+                         a.logProb(k), b.logProb(k), 0);
+        }
+    }
+
+    @Test
+    public void scoreTest() throws IOException {
+        NGrams bigrams = NGrams.fromText(new StringReader("ab ab. ba"),
+                                         new Alphabet("AB"), 2);
+        assertEquals(Math.log10(2.0 / 3), bigrams.logProb(1), 1e-6);
+        assertEquals(Math.log10(1.0 / 3), bigrams.logProb(2), 1e-6);
+        int[] text = { 0, 1, 0 };
+        assertEquals(bigrams.logProb(1) + bigrams.logProb(2),
+                     bigrams.score(text, 0, 3), 1e-6);
+        assertEquals(0, bigrams.score(text, 1, 1), 0);
+    }
+
+    @Test
+    public void saveLoadTest() throws IOException {
+        Path dir = Files.createTempDirectory("ngrams");
+        Path file = dir.resolve("english.bin");
+        try {
+            NGrams trigrams =
+                NGrams.fromText(new StringReader(ENGLISH), UPPER, 3);
+            trigrams.save(file);
+            checkSame("saveLoad", trigrams, NGrams.load(file));
+            NGrams bytes = NGrams.fromText(new StringReader("\u00ff\u0000"),
+                                           Alphabet.bytes(), 1);
+            bytes.save(file);
+            checkSame("saveLoadBytes", bytes, NGrams.load(file));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void replaceLoadedTest() throws IOException {
+        Path dir = Files.createTempDirectory("ngrams");
+        Path file = dir.resolve("english.bin");
+        try {
+            NGrams trigrams =
+                NGrams.fromText(new StringReader(ENGLISH), UPPER, 3);
+            NGrams bigrams =
+                NGrams.fromText(new StringReader(ENGLISH), UPPER, 2);
+            trigrams.save(file);
+            NGrams loaded = NGrams.load(file);
+            bigrams.save(file);
+            checkSame("replaceLoadedOld", trigrams, loaded);
+            checkSame("replaceLoadedNew", bigrams, NGrams.load(file));
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals("temporary files left", 1, files.count());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+
+    /** Check that loading a file holding DATA fails. */
+    private void checkBadFile(String testId, Path file, byte[] data)
+        throws IOException {
+        Files.write(file, data);
+        try {
+            NGrams.load(file);
+            fail(msg(testId, "loaded a bad file"));
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void loadBadFileTest() throws IOException {
+        Path file = Files.createTempFile("ngrams", ".bin");
+        try {
+            checkBadFile("loadBadFileHeader", file,
+                         new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+            Alphabet odd = new Alphabet("ABCDEFGHIJKLMNOPQRSTUVWXY");
+            NGrams.fromText(new StringReader(ENGLISH), odd, 2).save(file);
+            byte[] good = Files.readAllBytes(file);
+            int chars = 4 * Integer.BYTES + odd.size() * Character.BYTES;
+            checkBadFile("loadBadFileChars", file,
+                         Arrays.copyOf(good, chars - 1));
+            checkBadFile("loadBadFilePadding", file,
+                         Arrays.copyOf(good, chars));
+            checkBadFile("loadBadFileTable", file,
+                         Arrays.copyOf(good, good.length - 1));
+            checkBadFile("loadBadFileLong", file,
+                         Arrays.copyOf(good, good.length + Float.BYTES));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
@@ -1,6 +1,10 @@
 package enigma;
 
-import java.util.ArrayList;
+import java.lang.ref.WeakReference;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.WeakHashMap;
+
 import static enigma.EnigmaException.*;
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
@@ -13,61 +17,157 @@ class Permutation {
      *  form "(cccc) (cc) ..." where the c's are characters in ALPHABET, which
      *  is interpreted as a permutation in cycle notation.  Characters in the
      *  alphabet that are not included in any cycle map to themselves.
-     *  Whitespace is ignored. */
+     *  Whitespace between cycles is ignored.  CYCLES is read in a single
+     *  pass; errors report the (1-based) column at which they occur. */
     Permutation(String cycles, Alphabet alphabet) {
-        _alphabet = alphabet;
-        _cycles = new ArrayList<String>();
-        boolean expectingCycleEnd = false;
-        String currCycle = "";
+        this(alphabet, parseCycles(cycles, alphabet));
+    }
+
+    /** Return the mapping of the indices of ALPHABET given by CYCLES, as
+     *  for Permutation(CYCLES, ALPHABET). */
+    private static int[] parseCycles(String cycles, Alphabet alphabet) {
+        int[] forward = new int[alphabet.size()];
+        boolean[] seen = new boolean[forward.length];
+        boolean inCycle = false;
+        int first = -1, prev = -1;
         for (int i = 0; i < cycles.length(); i += 1) {
             char currChar = cycles.charAt(i);
-            if (Character.isWhitespace(currChar) && !expectingCycleEnd) {
-                continue;
-            } else if (Character.isWhitespace(currChar) && expectingCycleEnd) {
-                throw error("bad permutation spec");
-            }
             if (currChar == '(') {
-                if (expectingCycleEnd) {
-                    throw error("Invalid cycle in permutation.");
+                if (inCycle) {
+                    throw error("Nested cycle in permutation at column %d",
+                                i + 1);
                 }
-                expectingCycleEnd = true;
+                inCycle = true;
+                first = -1;
             } else if (currChar == ')') {
-                if (!expectingCycleEnd) {
-                    throw error("Invalid cycle in permutation.");
+                if (!inCycle) {
+                    throw error("Unmatched ')' in permutation at column %d",
+                                i + 1);
+                }
+                if (first != -1) {
+                    forward[prev] = first;
+                }
+                inCycle = false;
+            } else if (Character.isWhitespace(currChar)) {
+                if (inCycle) {
+                    throw error("bad permutation spec at column %d", i + 1);
                 }
-                addCycle(currCycle);
-                currCycle = "";
-                expectingCycleEnd = false;
             } else {
-                currCycle += currChar;
+                if (!inCycle) {
+                    throw error("Character outside cycle at column %d",
+                                i + 1);
+                }
+                if (!alphabet.contains(currChar)) {
+                    throw error("'%c' at column %d is not in alphabet",
+                                currChar, i + 1);
+                }
+                int curr = alphabet.toInt(currChar);
+                if (seen[curr]) {
+                    throw error("'%c' at column %d is already in a cycle",
+                                currChar, i + 1);
+                }
+                seen[curr] = true;
+                if (first == -1) {
+                    first = curr;
+                } else {
+                    forward[prev] = curr;
+                }
+                prev = curr;
             }
         }
-        for (int i = 0; i < size(); i += 1) {
-            boolean charFound = false;
-            char currChar = _alphabet.toChar(i);
-            for (String cycle: _cycles) {
-                if (cycle.indexOf(currChar) != -1) {
-                    charFound = true;
-                }
+        if (inCycle) {
+            throw error("Unterminated cycle in permutation at column %d",
+                        cycles.length());
+        }
+        for (int i = 0; i < forward.length; i += 1) {
+            if (!seen[i]) {
+                forward[i] = i;
             }
-            if (!charFound) {
-                _cycles.add(Character.toString(currChar));
+        }
+        return forward;
+    }
+
+    /** Set this Permutation to the one that maps index I of ALPHABET to
+     *  MAPPING[I].  MAPPING must contain each index of ALPHABET exactly
+     *  once.  This is how permutations of alphabets that cannot be written
+     *  in cycle notation, such as Alphabet.bytes(), are given. */
+    Permutation(int[] mapping, Alphabet alphabet) {
+        this(alphabet, checkMapping(mapping.clone(), alphabet));
+    }
+
+    /** Return MAPPING after checking that it is a permutation of the
+     *  indices of ALPHABET. */
+    private static int[] checkMapping(int[] mapping, Alphabet alphabet) {
+        if (mapping.length != alphabet.size()) {
+            throw error("Mapping has %d entries for an alphabet of %d",
+                        mapping.length, alphabet.size());
+        }
+        boolean[] seen = new boolean[mapping.length];
+        for (int i = 0; i < mapping.length; i += 1) {
+            int to = mapping[i];
+            if (to < 0 || to >= mapping.length || seen[to]) {
+                throw error("Mapping entry %d (%d) is out of range or"
+                            + " repeated", i, to);
             }
+            seen[to] = true;
         }
+        return mapping;
     }
 
-    /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
-     *  c0c1...cm. */
-    private void addCycle(String cycle) {
-        for (int i = 0; i < cycle.length(); i += 1) {
-            _alphabet.toInt(cycle.charAt(i));
-            for (String s: _cycles) {
-                if (s.contains(Character.toString(cycle.charAt(i)))) {
-                    throw error("Cycle has chars from previous cycles.");
-                }
+    /** A Permutation of ALPHABET under which index I maps to FORWARD[I].
+     *  FORWARD is taken over, not copied, and must be a bijection.  Every
+     *  constructor ends here, so all my fields but the tables built on
+     *  demand are final, and a Permutation is safely shared between
+     *  threads however it is published. */
+    private Permutation(Alphabet alphabet, int[] forward) {
+        _alphabet = alphabet;
+        _forward = forward;
+        _inverse = new int[forward.length];
+        for (int i = 0; i < forward.length; i += 1) {
+            _inverse[forward[i]] = i;
+        }
+        _cycleType = cycleType(forward);
+        int fixed = 0;
+        BigInteger order = BigInteger.ONE;
+        for (int len : _cycleType) {
+            if (len == 1) {
+                fixed += 1;
+            }
+            BigInteger bigLen = BigInteger.valueOf(len);
+            order = order.divide(order.gcd(bigLen)).multiply(bigLen);
+        }
+        _fixedPoints = fixed;
+        _order = order;
+        _hash = 31 * _alphabet.hashCode() + Arrays.hashCode(_forward);
+    }
+
+    /** Return the lengths of the cycles of the permutation under which
+     *  index I maps to FORWARD[I], fixed points included, longest
+     *  first. */
+    private static int[] cycleType(int[] forward) {
+        int[] lengths = new int[forward.length];
+        int numCycles = 0;
+        boolean[] done = new boolean[forward.length];
+        for (int start = 0; start < forward.length; start += 1) {
+            if (done[start]) {
+                continue;
+            }
+            int len = 0;
+            for (int i = start; !done[i]; i = forward[i]) {
+                done[i] = true;
+                len += 1;
             }
+            lengths[numCycles] = len;
+            numCycles += 1;
         }
-        _cycles.add(cycle);
+        int[] result = Arrays.copyOf(lengths, numCycles);
+        Arrays.sort(result);
+        for (int i = 0, j = numCycles - 1; i < j; i += 1, j -= 1) {
+            int tmp = result[i];
+            result[i] = result[j];
+            result[j] = tmp;
+        }
+        return result;
     }
 
     /** Return the value of P modulo the size of this permutation. */
@@ -87,43 +187,61 @@ class Permutation {
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        char curr = _alphabet.toChar(wrap(p));
-        int indexCurr = -1;
-        for (String s: _cycles) {
-            int indexChar = s.indexOf(curr);
-            if (indexChar != -1) {
-                int indexPermute = (indexChar + 1) % s.length();
-                if (indexPermute < 0) {
-                    indexPermute += size();
-                }
-                indexCurr = _alphabet.toInt(s.charAt(indexPermute));
-            }
-        }
-        if (indexCurr == -1) {
-            throw error("Somehow not found in permutation cycles.");
-        }
-        return indexCurr;
+        return _forward[wrap(p)];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to C modulo the alphabet size. */
     int invert(int c) {
-        char curr = _alphabet.toChar(wrap(c));
-        int indexCurr = -1;
-        for (String s: _cycles) {
-            int indexChar = s.indexOf(curr);
-            if (indexChar != -1) {
-                int indexPermute = (indexChar - 1) % s.length();
-                if (indexPermute < 0) {
-                    indexPermute += s.length();
-                }
-                indexCurr = _alphabet.toInt(s.charAt(indexPermute));
+        return _inverse[wrap(c)];
+    }
+
+    /** Set OUT[i] to permute(IN[i] & 0xFF) for each i < IN.length: apply
+     *  me to a whole array of (unsigned) byte indices at once.  I must
+     *  permute at most 256 values, and OUT must be at least as long as
+     *  IN.  Uses the Vector API where it is available. */
+    void permuteAll(byte[] in, byte[] out) {
+        if (size() > Alphabet.BYTE_SIZE) {
+            throw error("Permutation too large for byte indices");
+        }
+        if (out.length < in.length) {
+            throw error("Output array too small");
+        }
+        byte[] table = _forwardBytes;
+        if (table == null) {
+            table = new byte[Alphabet.BYTE_SIZE];
+            for (int i = 0; i < _forward.length; i += 1) {
+                table[i] = (byte) _forward[i];
+            }
+            _forwardBytes = table;
+        }
+        if (VECTOR != null) {
+            VECTOR.permuteAll(table, size(), in, out);
+            return;
+        }
+        for (int i = 0; i < in.length; i += 1) {
+            int p = in[i] & BYTE_MASK;
+            if (p >= _forward.length) {
+                throw error("Index out of range for permutation");
             }
+            out[i] = table[p];
+        }
+    }
+
+    /** Set OUT[i] to permute(IN[i]) for each i < IN.length, where each
+     *  IN[i] is in 0..size()-1.  OUT must be at least as long as IN.
+     *  Uses the Vector API where it is available. */
+    void permuteAll(int[] in, int[] out) {
+        if (out.length < in.length) {
+            throw error("Output array too small");
+        }
+        if (VECTOR != null) {
+            VECTOR.permuteAll(_forward, in, out);
+            return;
         }
-        if (indexCurr == -1) {
-            throw error("Somehow not found in permutation cycles.");
+        for (int i = 0; i < in.length; i += 1) {
+            out[i] = _forward[in[i]];
         }
-        return indexCurr;
     }
 
     /** Return the result of applying this permutation to the index of P
@@ -149,17 +267,208 @@ class Permutation {
     /** Return true iff this permutation is a derangement (i.e., a
      *  permutation for which no value maps to itself). */
     boolean derangement() {
-        for (String s: _cycles) {
-            if (s.length() == 1) {
-                return false;
+        return _fixedPoints == 0;
+    }
+
+    /** Return the lengths of my cycles, fixed points included, longest
+     *  first. */
+    int[] cycleType() {
+        return _cycleType.clone();
+    }
+
+    /** Return the number of values that I map to themselves. */
+    int fixedPoints() {
+        return _fixedPoints;
+    }
+
+    /** Return my order: the least N > 0 for which pow(N) is the
+     *  identity (the LCM of my cycle lengths, which can outgrow a long
+     *  for large alphabets). */
+    BigInteger order() {
+        return _order;
+    }
+
+    /** Return the permutation that applies me and then NEXT, which must
+     *  permute an alphabet of the same size. */
+    Permutation compose(Permutation next) {
+        if (next.size() != size()) {
+            throw error("Cannot compose permutations of different sizes");
+        }
+        int[] result = new int[size()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = next._forward[_forward[i]];
+        }
+        return new Permutation(_alphabet, result);
+    }
+
+    /** Return the inverse of this permutation. */
+    Permutation inverse() {
+        return new Permutation(_alphabet, _inverse.clone());
+    }
+
+    /** Return this permutation applied N times in a row.  N may be
+     *  negative, in which case the inverse is applied -N times. */
+    Permutation pow(int n) {
+        int[] result = new int[size()];
+        int[] cycle = new int[size()];
+        boolean[] done = new boolean[size()];
+        for (int start = 0; start < result.length; start += 1) {
+            if (done[start]) {
+                continue;
+            }
+            int len = 0;
+            for (int i = start; !done[i]; i = _forward[i]) {
+                done[i] = true;
+                cycle[len] = i;
+                len += 1;
+            }
+            int step = n % len;
+            if (step < 0) {
+                step += len;
+            }
+            for (int j = 0; j < len; j += 1) {
+                int k = j + step;
+                result[cycle[j]] = cycle[k < len ? k : k - len];
+            }
+        }
+        return new Permutation(_alphabet, result);
+    }
+
+    /** Return the permutation that maps P to permute(P + K) - K, modulo
+     *  the alphabet size: what this permutation looks like to a contact
+     *  that has been rotated K positions. */
+    Permutation conjugateByShift(int k) {
+        int shift = wrap(k);
+        int[] result = new int[size()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = wrap(_forward[wrap(i + shift)] - shift);
+        }
+        return new Permutation(_alphabet, result);
+    }
+
+    /** Return the canonical Permutation equal to this one: the first
+     *  equal Permutation interned that is still in use, or this one.
+     *  Machines built from one catalog can then share a single copy of
+     *  each wiring, together with its rotor tables.  The registry holds
+     *  its entries weakly, so it grows with the number of distinct
+     *  wirings in use, not with the number of machines. */
+    Permutation intern() {
+        synchronized (INTERNED) {
+            WeakReference<Permutation> ref = INTERNED.get(this);
+            Permutation canonical = ref == null ? null : ref.get();
+            if (canonical == null) {
+                INTERNED.put(this, new WeakReference<>(this));
+                canonical = this;
+            }
+            return canonical;
+        }
+    }
+
+    /** Return the table of my wiring at every rotor offset, or of my
+     *  inverse's if INVERSE.  The tables are built on first request and
+     *  then shared by every rotor that uses me. */
+    WiringTable wiring(boolean inverse) {
+        synchronized (this) {
+            if (_wiring == null) {
+                _wiring = new WiringTable[] {
+                    new WiringTable(this, false), new WiringTable(this, true)
+                };
             }
+            return _wiring[inverse ? 1 : 0];
         }
-        return true;
     }
 
+    /** Two Permutations are equal iff they permute equal alphabets in
+     *  the same way. */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Permutation)) {
+            return false;
+        }
+        Permutation other = (Permutation) obj;
+        return _hash == other._hash
+            && Arrays.equals(_forward, other._forward)
+            && _alphabet.equals(other._alphabet);
+    }
+
+    @Override
+    public int hashCode() {
+        return _hash;
+    }
+
+    /** Bulk implementations of permuteAll's loops.  The one that uses
+     *  the Vector API (VectorPermute) needs the incubating
+     *  jdk.incubator.vector module, so it is compiled separately (make
+     *  vector) and loaded by name, and this class builds and runs
+     *  without it. */
+    interface Bulk {
+
+        /** Set OUT[i] to TABLE[IN[i] & 0xFF] for each i < IN.length,
+         *  where TABLE holds the 256 entries of a permutation of SIZE <=
+         *  256 values, padded with zeros.  Throws an EnigmaException if
+         *  some byte of IN is (unsigned) not less than SIZE. */
+        void permuteAll(byte[] table, int size, byte[] in, byte[] out);
+
+        /** Set OUT[i] to TABLE[IN[i]] for each i < IN.length.  Each IN[i]
+         *  must index TABLE. */
+        void permuteAll(int[] table, int[] in, int[] out);
+    }
+
+    /** The Vector API implementation permuteAll uses, or null if it was
+     *  not built, the module is not present at run time (java
+     *  --add-modules jdk.incubator.vector), or the property enigma.vector
+     *  is "false", in which case permuteAll uses scalar loops. */
+    static final Bulk VECTOR = vectorBulk();
+
+    /** Return a VectorPermute, or null if it cannot be used. */
+    private static Bulk vectorBulk() {
+        if ("false".equals(System.getProperty("enigma.vector"))) {
+            return null;
+        }
+        try {
+            return (Bulk) Class.forName("enigma.VectorPermute")
+                .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError excp) {
+            return null;
+        }
+    }
+
+    /** Mask that turns a byte into its unsigned value. */
+    private static final int BYTE_MASK = 0xFF;
+
+    /** Canonical instances handed out by intern(). */
+    private static final WeakHashMap<Permutation, WeakReference<Permutation>>
+        INTERNED = new WeakHashMap<>();
+
     /** Alphabet of this permutation. */
-    private Alphabet _alphabet;
+    private final Alphabet _alphabet;
+
+    /** Index I maps to _forward[I] under this permutation. */
+    private final int[] _forward;
+
+    /** Index I maps to _inverse[I] under the inverse of this permutation. */
+    private final int[] _inverse;
+
+    /** My cycle lengths, longest first. */
+    private final int[] _cycleType;
+
+    /** Number of my fixed points. */
+    private final int _fixedPoints;
+
+    /** My order. */
+    private final BigInteger _order;
+
+    /** Hash code, computed once. */
+    private final int _hash;
+
+    /** _forward as bytes, padded to 256 entries, once permuteAll(byte[],
+     *  byte[]) has needed it.  Threads may race to build it, but each
+     *  builds the same table in full before publishing it here. */
+    private volatile byte[] _forwardBytes;
 
-    /** Cycles of this permutation.*/
-    private ArrayList<String> _cycles;
+    /** My forward and inverse WiringTables, once built. */
+    private WiringTable[] _wiring;
 }
@@ -0,0 +1,157 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the operations that combine and
+ *  transform Permutations (compose, inverse, pow and conjugateByShift).
+ *  @author Daric Lim
+ */
+public class PermutationAlgebraTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Range of the powers and shifts tried, -LIMIT .. LIMIT. */
+    private static final int LIMIT = 30;
+
+    /** Return the permutations tried, which failures identify by their
+     *  index here: each naval rotor and reflector, and random
+     *  permutations of alphabets of a few sizes. */
+    private ArrayList<Permutation> samples() {
+        ArrayList<Permutation> result = new ArrayList<>();
+        for (String cycles : NAVALA.values()) {
+            result.add(new Permutation(cycles, UPPER));
+        }
+        Random random = new Random(1);
+        for (String chars : new String[] { "A", "AB", "ABCDEFG" }) {
+            Alphabet alpha = new Alphabet(chars);
+            result.add(new Permutation(shuffled(alpha.size(), random),
+                                       alpha));
+        }
+        return result;
+    }
+
+    /** Return the mapping of PERM applied N times, one step at a
+     *  time. */
+    private int[] stepPow(Permutation perm, int n) {
+        int[] result = new int[perm.size()];
+        for (int i = 0; i < result.length; i += 1) {
+            int p = i;
+            for (int k = 0; k < Math.abs(n); k += 1) {
+                p = n > 0 ? perm.permute(p) : perm.invert(p);
+            }
+            result[i] = p;
+        }
+        return result;
+    }
+
+    /** Return the mapping of PERM as a list of indices. */
+    private int[] mapping(Permutation perm) {
+        int[] result = new int[perm.size()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = perm.permute(i);
+        }
+        return result;
+    }
+
+    @Test
+    public void composeTest() {
+        ArrayList<Permutation> perms = samples();
+        for (int j = 0; j < perms.size(); j += 1) {
+            for (int k = 0; k < perms.size(); k += 1) {
+                Permutation a = perms.get(j), b = perms.get(k);
+                if (a.size() != b.size()) {
+                    continue;
+                }
+                Permutation ab = a.compose(b);
+                for (int i = 0; i < a.size(); i += 1) {
+                    assertEquals(msg("compose", "%d then %d at %d", j, k, i),
+                                 b.permute(a.permute(i)), ab.permute(i));
+                }
+            }
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void composeSizeTest() {
+        new Permutation("", UPPER)
+            .compose(new Permutation("", new Alphabet("AB")));
+    }
+
+    @Test
+    public void inverseTest() {
+        ArrayList<Permutation> perms = samples();
+        for (int j = 0; j < perms.size(); j += 1) {
+            Permutation perm = perms.get(j), inv = perm.inverse();
+            for (int i = 0; i < perm.size(); i += 1) {
+                assertEquals(msg("inverse", "%d at %d", j, i),
+                             perm.invert(i), inv.permute(i));
+                assertEquals(msg("inverse", "%d at %d", j, i),
+                             i, inv.permute(perm.permute(i)));
+            }
+            assertEquals(perm, inv.inverse());
+            assertEquals(new Permutation("", perm.alphabet()),
+                         perm.compose(inv));
+        }
+    }
+
+    @Test
+    public void powTest() {
+        ArrayList<Permutation> perms = samples();
+        for (int j = 0; j < perms.size(); j += 1) {
+            Permutation perm = perms.get(j);
+            for (int n = -LIMIT; n <= LIMIT; n += 1) {
+                assertArrayEquals(msg("pow", "%d ** %d", j, n),
+                                  stepPow(perm, n), mapping(perm.pow(n)));
+            }
+            assertArrayEquals(msg("pow", "%d ** MIN_VALUE", j),
+                              mapping(perm.pow(Integer.MIN_VALUE)),
+                              mapping(perm.pow(Integer.MIN_VALUE + 1)
+                                      .compose(perm.inverse())));
+        }
+    }
+
+    @Test
+    public void conjugateByShiftTest() {
+        ArrayList<Permutation> perms = samples();
+        for (int j = 0; j < perms.size(); j += 1) {
+            Permutation perm = perms.get(j);
+            int size = perm.size();
+            for (int k = -LIMIT; k <= LIMIT; k += 1) {
+                Permutation shifted = perm.conjugateByShift(k);
+                for (int i = 0; i < size; i += 1) {
+                    int expected = Math.floorMod(
+                        perm.permute(Math.floorMod(i + k, size)) - k, size);
+                    assertEquals(msg("conjugateByShift", "%d by %d at %d",
+                                     j, k, i),
+                                 expected, shifted.permute(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void conjugateNavalTest() {
+        for (String name : NAVALA.keySet()) {
+            if (!NAVALB.containsKey(name)) {
+                continue;
+            }
+            Permutation a = new Permutation(NAVALA.get(name), UPPER);
+            assertEquals(msg("conjugateNaval", "%s at B", name),
+                         new Permutation(NAVALB.get(name), UPPER),
+                         a.conjugateByShift(1));
+            assertEquals(msg("conjugateNaval", "%s at Z", name),
+                         new Permutation(NAVALZ.get(name), UPPER),
+                         a.conjugateByShift(-1));
+        }
+    }
+}
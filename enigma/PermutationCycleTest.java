@@ -0,0 +1,112 @@
+package enigma;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the cycle structure of Permutations
+ *  (cycleType, fixedPoints, derangement and order).
+ *  @author Daric Lim
+ */
+public class PermutationCycleTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void navalRotorTest() {
+        Permutation perm = new Permutation(NAVALA.get("I"), UPPER);
+        assertArrayEquals(new int[] { 10, 4, 4, 3, 2, 2, 1 },
+                          perm.cycleType());
+        assertEquals(1, perm.fixedPoints());
+        assertFalse(perm.derangement());
+        assertEquals(BigInteger.valueOf(60), perm.order());
+    }
+
+    @Test
+    public void reflectorTest() {
+        Permutation perm = new Permutation(NAVALA.get("B"), UPPER);
+        int[] pairs = new int[UPPER.size() / 2];
+        Arrays.fill(pairs, 2);
+        assertArrayEquals(pairs, perm.cycleType());
+        assertEquals(0, perm.fixedPoints());
+        assertTrue(perm.derangement());
+        assertEquals(BigInteger.TWO, perm.order());
+    }
+
+    @Test
+    public void identityTest() {
+        Permutation perm = new Permutation("", UPPER);
+        int[] ones = new int[UPPER.size()];
+        Arrays.fill(ones, 1);
+        assertArrayEquals(ones, perm.cycleType());
+        assertEquals(UPPER.size(), perm.fixedPoints());
+        assertEquals(BigInteger.ONE, perm.order());
+    }
+
+    @Test
+    public void cycleTypeCopiedTest() {
+        Permutation perm = new Permutation(NAVALA.get("I"), UPPER);
+        perm.cycleType()[0] = 0;
+        assertEquals(10, perm.cycleType()[0]);
+    }
+
+    @Test
+    public void orderIsPowerTest() {
+        for (String name : NAVALA.keySet()) {
+            Permutation perm = new Permutation(NAVALA.get(name), UPPER);
+            int order = perm.order().intValueExact();
+            assertEquals(msg("orderIsPower", "%s", name),
+                         new Permutation("", UPPER), perm.pow(order));
+            for (int n = 1; n < order; n += 1) {
+                assertNotEquals(msg("orderIsPower", "%s ** %d", name, n),
+                                new Permutation("", UPPER), perm.pow(n));
+            }
+        }
+    }
+
+    /** The primes up to 53, whose product is too large for a long. */
+    private static final int[] PRIMES = {
+        2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53,
+    };
+
+    @Test
+    public void largeOrderTest() {
+        int size = 400;
+        char[] chars = new char[size];
+        for (int i = 0; i < size; i += 1) {
+            chars[i] = (char) ('\u0100' + i);
+        }
+        Alphabet alpha = new Alphabet(new String(chars));
+        int[] mapping = new int[size];
+        int start = 0;
+        BigInteger product = BigInteger.ONE;
+        for (int p : PRIMES) {
+            for (int i = 0; i < p; i += 1) {
+                mapping[start + i] = start + (i + 1) % p;
+            }
+            start += p;
+            product = product.multiply(BigInteger.valueOf(p));
+        }
+        for (int i = start; i < size; i += 1) {
+            mapping[i] = i;
+        }
+        Permutation perm = new Permutation(mapping, alpha);
+        assertTrue(product.compareTo(BigInteger.valueOf(Long.MAX_VALUE))
+                   > 0);
+        assertEquals(product, perm.order());
+        assertEquals(size - start, perm.fixedPoints());
+        int[] type = perm.cycleType();
+        assertEquals(PRIMES.length + size - start, type.length);
+        for (int i = 0; i < PRIMES.length; i += 1) {
+            assertEquals(PRIMES[PRIMES.length - 1 - i], type[i]);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the parsing of cycle notation by the
+ *  Permutation class.
+ *  @author Daric Lim
+ */
+public class PermutationParseTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Check that CYCLES is rejected with an error whose message is
+     *  MESSAGE. */
+    private void checkBad(String cycles, String message) {
+        try {
+            new Permutation(cycles, UPPER);
+            fail(msg("parse", "accepted \"%s\"", cycles));
+        } catch (EnigmaException excp) {
+            assertEquals(msg("parse", "error for \"%s\"", cycles),
+                         message, excp.getMessage());
+        }
+    }
+
+    @Test
+    public void unterminatedTest() {
+        checkBad("(AB", "Unterminated cycle in permutation at column 3");
+        checkBad("(AB) (C",
+                 "Unterminated cycle in permutation at column 7");
+    }
+
+    @Test
+    public void whitespaceInCycleTest() {
+        checkBad("(A B)", "bad permutation spec at column 3");
+    }
+
+    @Test
+    public void outsideCycleTest() {
+        checkBad("A(BC)", "Character outside cycle at column 1");
+        checkBad("(AB) C", "Character outside cycle at column 6");
+    }
+
+    @Test
+    public void repeatTest() {
+        checkBad("(AB)(BA)", "'B' at column 6 is already in a cycle");
+        checkBad("(AA)", "'A' at column 3 is already in a cycle");
+    }
+
+    @Test
+    public void nestedTest() {
+        checkBad("(()", "Nested cycle in permutation at column 2");
+    }
+
+    @Test
+    public void unmatchedTest() {
+        checkBad(")", "Unmatched ')' in permutation at column 1");
+        checkBad("(AB))", "Unmatched ')' in permutation at column 5");
+    }
+
+    @Test
+    public void notInAlphabetTest() {
+        checkBad("(A1)", "'1' at column 3 is not in alphabet");
+    }
+
+    @Test
+    public void emptyCycleTest() {
+        Permutation perm = new Permutation("()", UPPER);
+        assertEquals(new Permutation("", UPPER), perm);
+        assertEquals(UPPER.size(), perm.fixedPoints());
+    }
+
+    @Test
+    public void spacingTest() {
+        Permutation perm = new Permutation("  (AB)\t(CD)\n", UPPER);
+        assertEquals(new Permutation("(AB) (CD)", UPPER), perm);
+        assertEquals('B', perm.permute('A'));
+        assertEquals('A', perm.permute('B'));
+        assertEquals('C', perm.permute('D'));
+        assertEquals('E', perm.permute('E'));
+    }
+}
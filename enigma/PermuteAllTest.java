@@ -0,0 +1,131 @@
+package enigma;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for Permutation.permuteAll, scalar and
+ *  (when it is built and the module is present) Vector API.
+ *  @author Daric Lim
+ */
+public class PermuteAllTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Return a permutation of SIZE characters, drawn from RANDOM. */
+    private Permutation randomPerm(int size, Random random) {
+        char[] chars = new char[size];
+        for (int i = 0; i < size; i += 1) {
+            chars[i] = (char) (FIRST_CHAR + i);
+        }
+        return new Permutation(shuffled(size, random),
+                               new Alphabet(new String(chars)));
+    }
+
+    /** Return LENGTH random indices below SIZE, as bytes. */
+    private byte[] randomBytes(int length, int size, Random random) {
+        byte[] result = new byte[length];
+        for (int i = 0; i < length; i += 1) {
+            result[i] = (byte) random.nextInt(size);
+        }
+        return result;
+    }
+
+    @Test
+    public void scalarBytesTest() {
+        Random random = new Random(1);
+        for (int size : new int[] { 2, 26, 100, 255, 256 }) {
+            Permutation perm = randomPerm(size, random);
+            byte[] in = randomBytes(1000, size, random);
+            byte[] out = new byte[in.length];
+            perm.permuteAll(in, out);
+            for (int i = 0; i < in.length; i += 1) {
+                assertEquals(msg("scalarBytes", "size %d at %d", size, i),
+                             perm.permute(in[i] & 0xFF), out[i] & 0xFF);
+            }
+        }
+    }
+
+    @Test
+    public void scalarIntsTest() {
+        Random random = new Random(2);
+        Permutation perm = randomPerm(200, random);
+        int[] in = new int[1001], out = new int[in.length];
+        for (int i = 0; i < in.length; i += 1) {
+            in[i] = random.nextInt(200);
+        }
+        perm.permuteAll(in, out);
+        for (int i = 0; i < in.length; i += 1) {
+            assertEquals(perm.permute(in[i]), out[i]);
+        }
+    }
+
+    @Test
+    public void vectorMatchesScalarTest() {
+        Permutation.Bulk vector = Permutation.VECTOR;
+        if (vector == null) {
+            return;
+        }
+        Random random = new Random(3);
+        for (int size : new int[] { 2, 16, 26, 33, 64, 100, 255, 256 }) {
+            Permutation perm = randomPerm(size, random);
+            byte[] table = new byte[Alphabet.BYTE_SIZE];
+            int[] ints = new int[size];
+            for (int i = 0; i < size; i += 1) {
+                ints[i] = perm.permute(i);
+                table[i] = (byte) ints[i];
+            }
+            for (int length : new int[] { 0, 1, 63, 64, 65, 1000 }) {
+                byte[] in = randomBytes(length, size, random);
+                byte[] out = new byte[length];
+                int[] intIn = new int[length], intOut = new int[length];
+                vector.permuteAll(table, size, in, out);
+                for (int i = 0; i < length; i += 1) {
+                    intIn[i] = in[i] & 0xFF;
+                }
+                vector.permuteAll(ints, intIn, intOut);
+                for (int i = 0; i < length; i += 1) {
+                    String id = msg("vector", "size %d, length %d, at %d",
+                                    size, length, i);
+                    assertEquals(id, perm.permute(in[i] & 0xFF),
+                                 out[i] & 0xFF);
+                    assertEquals(id, perm.permute(intIn[i]), intOut[i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void vectorRangeTest() {
+        Permutation.Bulk vector = Permutation.VECTOR;
+        if (vector == null) {
+            return;
+        }
+        byte[] in = new byte[100];
+        in[70] = 26;
+        try {
+            vector.permuteAll(new byte[Alphabet.BYTE_SIZE], 26, in,
+                              new byte[in.length]);
+            fail("Index 26 accepted by a permutation of 26");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void scalarRangeTest() {
+        byte[] in = new byte[100];
+        in[70] = 26;
+        new Permutation("(AB)", UPPER).permuteAll(in, new byte[in.length]);
+    }
+
+    /** First character of the alphabets of randomPerm. */
+    private static final char FIRST_CHAR = '\u0100';
+}
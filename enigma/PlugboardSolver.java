@@ -0,0 +1,209 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static enigma.EnigmaException.*;
+
+/** Recovers the plugboard of a message whose rotor order, rings and start
+ *  positions are known, by hill climbing on n-gram fitness.  The rotors
+ *  (everything between the two passes through the plugboard) are
+ *  tabulated once into one substitution row per keypress of the message,
+ *  so trying a plugboard P is a table walk: plain[i] =
+ *  P[row_i[P[cipher[i]]]].  The plugboard itself is an int table that
+ *  each move changes in place (and undoes if the move does not help);
+ *  no Permutation is built until the end.  Restarts from different
+ *  random plugboards run concurrently on a ForkJoinPool.
+ *  @author Daric Lim
+ */
+class PlugboardSolver {
+
+    /** A solver for the plugboard of CIPHERTEXT, which was produced by
+     *  MACHINE's rotors from their current positions, scored with
+     *  FITNESS.  MACHINE's own plugboard is ignored, and MACHINE is not
+     *  changed. */
+    PlugboardSolver(Machine machine, String ciphertext, NGrams fitness) {
+        _alphabet = machine.alphabet();
+        if (!fitness.alphabet().equals(_alphabet)) {
+            throw error("Fitness statistics are for another alphabet");
+        }
+        _size = _alphabet.size();
+        _fitness = fitness;
+        _cipher = _alphabet.toInts(ciphertext);
+        Machine rotors = machine.copy();
+        rotors.setPlugboard(new Permutation("", _alphabet));
+        _rows = new int[_cipher.length][_size];
+        for (int i = 0; i < _rows.length; i += 1) {
+            rotors.step();
+            rotors.substituteAll(_rows[i]);
+        }
+    }
+
+    /** Returns the best plugboard with at most MAXPAIRS pairs found by
+     *  RESTARTS hill climbs on POOL.  The first climb starts from the
+     *  empty plugboard and the others from random ones drawn from SEED,
+     *  so the result depends only on the arguments. */
+    Solution solve(int restarts, int maxPairs, long seed,
+                   ForkJoinPool pool) {
+        if (restarts <= 0) {
+            throw error("Must make at least one climb");
+        }
+        if (maxPairs < 0 || maxPairs > _size / 2) {
+            throw error("Plugboard cannot have %d pairs", maxPairs);
+        }
+        return pool.invoke(new Climbs(0, restarts, maxPairs, seed));
+    }
+
+    /** A plugboard and its fitness. */
+    static class Solution {
+
+        /** A solution with plugboard PLUGBOARD, whose decryption scores
+         *  SCORE. */
+        Solution(Permutation plugboard, double score) {
+            _plugboard = plugboard;
+            _score = score;
+        }
+
+        /** Return my plugboard. */
+        Permutation plugboard() {
+            return _plugboard;
+        }
+
+        /** Return the n-gram score of my decryption. */
+        double score() {
+            return _score;
+        }
+
+        /** My plugboard. */
+        private final Permutation _plugboard;
+
+        /** My score. */
+        private final double _score;
+    }
+
+    /** Climb from plugboard table PLUGS (an involution, with PAIRS pairs),
+     *  using PLAIN as the decryption buffer, until no single move whose
+     *  result has at most MAXPAIRS pairs improves the score.  Leaves the
+     *  best plugboard found in PLUGS and returns its score.  A move on
+     *  letters A and B unplugs them if they are paired with each other,
+     *  and otherwise unplugs both and plugs them together. */
+    private double climb(int[] plugs, int pairs, int maxPairs, int[] plain) {
+        double score = score(plugs, plain);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int a = 0; a < _size; a += 1) {
+                for (int b = a + 1; b < _size; b += 1) {
+                    int pa = plugs[a], pb = plugs[b];
+                    int newPairs = pa == b ? pairs - 1
+                        : pairs + 1 - (pa != a ? 1 : 0) - (pb != b ? 1 : 0);
+                    if (newPairs > maxPairs) {
+                        continue;
+                    }
+                    plugs[pa] = pa;
+                    plugs[pb] = pb;
+                    if (pa != b) {
+                        plugs[a] = b;
+                        plugs[b] = a;
+                    }
+                    double trial = score(plugs, plain);
+                    if (trial > score) {
+                        score = trial;
+                        pairs = newPairs;
+                        improved = true;
+                    } else {
+                        plugs[pa] = a;
+                        plugs[pb] = b;
+                        plugs[a] = pa;
+                        plugs[b] = pb;
+                    }
+                }
+            }
+        }
+        return score;
+    }
+
+    /** Return the fitness of the decryption under plugboard table PLUGS,
+     *  decrypting into PLAIN. */
+    private double score(int[] plugs, int[] plain) {
+        for (int i = 0; i < _cipher.length; i += 1) {
+            plain[i] = plugs[_rows[i][plugs[_cipher[i]]]];
+        }
+        return _fitness.score(plain, 0, plain.length);
+    }
+
+    /** A task that runs climbs FIRST..LAST-1 and returns the best result,
+     *  preferring the earliest climb among equals. */
+    private class Climbs extends RecursiveTask<Solution> {
+
+        /** Runs climbs FIRST..LAST-1 for plugboards of at most MAXPAIRS
+         *  pairs, climb #K starting from a plugboard drawn with seed
+         *  SEED + K. */
+        Climbs(int first, int last, int maxPairs, long seed) {
+            _first = first;
+            _last = last;
+            _maxPairs = maxPairs;
+            _seed = seed;
+        }
+
+        @Override
+        protected Solution compute() {
+            if (_last - _first > 1) {
+                int mid = (_first + _last) >>> 1;
+                Climbs left = new Climbs(_first, mid, _maxPairs, _seed);
+                Climbs right = new Climbs(mid, _last, _maxPairs, _seed);
+                invokeAll(left, right);
+                Solution l = left.join(), r = right.join();
+                return r.score() > l.score() ? r : l;
+            }
+            int[] plugs = new int[_size];
+            for (int i = 0; i < _size; i += 1) {
+                plugs[i] = i;
+            }
+            int pairs = 0;
+            if (_first > 0) {
+                Random random = new Random(_seed + _first);
+                int[] order = plugs.clone();
+                for (int i = _size - 1; i > 0; i -= 1) {
+                    int j = random.nextInt(i + 1), t = order[i];
+                    order[i] = order[j];
+                    order[j] = t;
+                }
+                pairs = random.nextInt(_maxPairs + 1);
+                for (int p = 0; p < pairs; p += 1) {
+                    plugs[order[2 * p]] = order[2 * p + 1];
+                    plugs[order[2 * p + 1]] = order[2 * p];
+                }
+            }
+            double score = climb(plugs, pairs, _maxPairs,
+                                 new int[_cipher.length]);
+            return new Solution(new Permutation(plugs, _alphabet), score);
+        }
+
+        /** Climbs I run. */
+        private final int _first, _last;
+
+        /** Most pairs allowed. */
+        private final int _maxPairs;
+
+        /** Seed of the random starting plugboards. */
+        private final long _seed;
+    }
+
+    /** Alphabet of the message. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet. */
+    private final int _size;
+
+    /** Statistics that score decryptions. */
+    private final NGrams _fitness;
+
+    /** The message, as indices. */
+    private final int[] _cipher;
+
+    /** _rows[I] is the substitution of the rotors alone at keypress I of
+     *  the message. */
+    private final int[][] _rows;
+}
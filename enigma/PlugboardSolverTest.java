@@ -0,0 +1,94 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the PlugboardSolver class.
+ *  @author Daric Lim
+ */
+public class PlugboardSolverTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    @Test
+    public void solveTest() throws IOException {
+        String[] rotors = { "B", "III", "I", "II" };
+        Machine machine =
+            navalMachine(rotors, "(AQ) (HR) (BZ) (CX) (DM) (EK)");
+        machine.setRotors("QEV");
+        String ciphertext = machine.convert(ENGLISH);
+        Machine search = navalMachine(rotors, "");
+        search.setRotors("QEV");
+        NGrams fitness =
+            NGrams.fromText(new StringReader(ENGLISH), UPPER, 3);
+        PlugboardSolver.Solution solution =
+            new PlugboardSolver(search, ciphertext, fitness)
+            .solve(4, 10, 1, ForkJoinPool.commonPool());
+        search.setPlugboard(solution.plugboard());
+        search.setRotors("QEV");
+        assertEquals(ENGLISH, search.convert(ciphertext));
+    }
+
+    /** Return the plugboard of the byte alphabet that swaps each pair of
+     *  characters in PAIRS. */
+    private Permutation bytePlugboard(String... pairs) {
+        int[] mapping = new int[Alphabet.BYTE_SIZE];
+        for (int i = 0; i < mapping.length; i += 1) {
+            mapping[i] = i;
+        }
+        for (String pair : pairs) {
+            mapping[pair.charAt(0)] = pair.charAt(1);
+            mapping[pair.charAt(1)] = pair.charAt(0);
+        }
+        return new Permutation(mapping, Alphabet.bytes());
+    }
+
+    /** Return the score under FITNESS of the decryption of CIPHERTEXT
+     *  by a copy of MACHINE with plugboard PLUGBOARD. */
+    private double score(Machine machine, Permutation plugboard,
+                         String ciphertext, NGrams fitness) {
+        Machine decrypt = machine.copy();
+        decrypt.setPlugboard(plugboard);
+        int[] plain = fitness.alphabet().toInts(decrypt.convert(ciphertext));
+        return fitness.score(plain, 0, plain.length);
+    }
+
+    @Test
+    public void longPeriodTest() throws IOException {
+        Machine machine = randomMachine(Alphabet.bytes(), 3, 1, 4);
+        Machine search = machine.copy();
+        Permutation plugboard = bytePlugboard("E\u0001", "T\u0080");
+        machine.setPlugboard(plugboard);
+        String ciphertext = machine.convert(ENGLISH);
+        NGrams fitness = NGrams.fromText(new StringReader(ENGLISH),
+                                         Alphabet.bytes(), 2);
+        int maxPairs = 10;
+        PlugboardSolver.Solution solution =
+            new PlugboardSolver(search, ciphertext, fitness)
+            .solve(1, maxPairs, 1, ForkJoinPool.commonPool());
+        Permutation found = solution.plugboard();
+        assertEquals(msg("longPeriod", "not an involution"),
+                     new Permutation("", Alphabet.bytes()), found.pow(2));
+        assertTrue(msg("longPeriod", "too many pairs"),
+                   Alphabet.BYTE_SIZE - found.fixedPoints() <= 2 * maxPairs);
+        assertEquals('\u0001', found.permute('E'));
+        assertEquals('\u0080', found.permute('T'));
+        assertEquals(msg("longPeriod", "score of the decryption"),
+                     score(search, found, ciphertext, fitness),
+                     solution.score(), 1e-9);
+        assertTrue(msg("longPeriod", "worse than the true plugboard"),
+                   solution.score()
+                   >= score(search, plugboard, ciphertext, fitness));
+    }
+
+}
@@ -0,0 +1,339 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static enigma.EnigmaException.*;
+
+/** Recovers the rings of the right and middle rotors for keys found by a
+ *  search (such as KeySearch) that assumed fixed rings.  Turning a
+ *  rotor's ring and its setting by the same amount leaves its wiring
+ *  offset, and so every substitution, unchanged except for when it
+ *  carries the rotor to its left (see Machine.shiftRing).  So a key found
+ *  with the wrong ring is right for most of the message, and a ring need
+ *  only be tried as such a shift, together with moves of at most one
+ *  position of that rotor and the one to its left (for keys whose
+ *  carries fell on the other side of the start): 9 x alphabet size
+ *  trials for the right ring, then as many for the middle one, repeated
+ *  while either improves, rather than every combination of the rings
+ *  and settings of all the rotors.  A
+ *  trial steps through the message, substituting only at keypresses
+ *  where some rotor's offset differs from the untried key, and rescores
+ *  only the n-grams those keypresses touch.
+ *  @author Daric Lim
+ */
+class RingSearch {
+
+    /** A search for the rings of keys of CIPHERTEXT, decrypted with the
+     *  catalog, rings and plugboard of MACHINE and scored with FITNESS.
+     *  MACHINE is copied and not changed. */
+    RingSearch(Machine machine, String ciphertext, NGrams fitness) {
+        _machine = machine.copy();
+        _alphabet = machine.alphabet();
+        if (!fitness.alphabet().equals(_alphabet)) {
+            throw error("Fitness statistics are for another alphabet");
+        }
+        _fitness = fitness;
+        _cipher = _alphabet.toInts(ciphertext);
+    }
+
+    /** Returns the keys of CANDIDATES with their right and middle rings
+     *  recovered, best first (and in the order of CANDIDATES among equal
+     *  scores), working on them concurrently on POOL.  A candidate whose
+     *  setting is off by a carry or two can climb to a worse key than a
+     *  lower-ranked one, so it pays to pass several. */
+    List<Key> recover(List<KeySearch.Candidate> candidates,
+                      ForkJoinPool pool) {
+        List<Key> result =
+            pool.invoke(new Recover(candidates, 0, candidates.size()));
+        result.sort(BY_SCORE);
+        return result;
+    }
+
+    /** A complete rotor key. */
+    static class Key {
+
+        /** A key with rotors ROTORS, rings RINGS and setting SETTING (as
+         *  for Machine.insertRotors, setRings and then setRotors; see
+         *  apply), whose decryption has n-gram score SCORE. */
+        Key(String[] rotors, String setting, String rings, double score) {
+            _rotors = rotors;
+            _setting = setting;
+            _rings = rings;
+            _score = score;
+        }
+
+        /** Return the names of my rotors, reflector first. */
+        String[] rotors() {
+            return _rotors.clone();
+        }
+
+        /** Return my rotor setting, for Machine.setRotors once my rings
+         *  are set. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return my rings. */
+        String rings() {
+            return _rings;
+        }
+
+        /** Return the n-gram score of my decryption. */
+        double score() {
+            return _score;
+        }
+
+        /** Put my rotors, rings and setting in MACHINE, which must have
+         *  the catalog I was found with.  The rings go in first: setRotors
+         *  places each rotor relative to the ring it has at the time. */
+        void apply(Machine machine) {
+            machine.insertRotors(_rotors);
+            machine.setRings(_rings);
+            machine.setRotors(_setting);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s %s %.1f", String.join(" ", _rotors),
+                                 _setting, _rings, _score);
+        }
+
+        /** My rotor names. */
+        private final String[] _rotors;
+
+        /** My setting. */
+        private final String _setting;
+
+        /** My rings. */
+        private final String _rings;
+
+        /** My score. */
+        private final double _score;
+    }
+
+    /** A task that recovers the rings of candidates START..END-1. */
+    private class Recover extends RecursiveTask<List<Key>> {
+
+        /** Recovers the rings of CANDIDATES[START..END-1]. */
+        Recover(List<KeySearch.Candidate> candidates, int start, int end) {
+            _candidates = candidates;
+            _start = start;
+            _end = end;
+        }
+
+        @Override
+        protected List<Key> compute() {
+            if (_end - _start > 1) {
+                int mid = (_start + _end) >>> 1;
+                Recover left = new Recover(_candidates, _start, mid),
+                    right = new Recover(_candidates, mid, _end);
+                invokeAll(left, right);
+                List<Key> result = left.join();
+                result.addAll(right.join());
+                return result;
+            }
+            List<Key> result = new ArrayList<>();
+            if (_end > _start) {
+                result.add(new Trials().recover(_candidates.get(_start)));
+            }
+            return result;
+        }
+
+        /** Candidates to work on. */
+        private final List<KeySearch.Candidate> _candidates;
+
+        /** The range of _candidates I cover. */
+        private final int _start, _end;
+    }
+
+    /** The buffers for the ring trials of one candidate, reused by every
+     *  trial. */
+    private class Trials {
+
+        /** Buffers for a message of my length. */
+        Trials() {
+            _base = new int[_cipher.length];
+            _trial = new int[_cipher.length];
+            _changed = new int[_cipher.length];
+        }
+
+        /** Return CANDIDATE with its right and middle rings recovered. */
+        Key recover(KeySearch.Candidate candidate) {
+            String[] rotors = candidate.rotors();
+            Machine machine = _machine.copy();
+            machine.insertRotors(rotors);
+            machine.setRotors(candidate.setting());
+            int last = rotors.length - 1;
+            _offsets = new int[_cipher.length * last];
+            _setting = new int[last];
+            double score = decryptBase(machine);
+            boolean improved = true;
+            for (int pass = 0; improved && pass < MAX_PASSES; pass += 1) {
+                improved = false;
+                for (int slot = last; slot >= last - 1 && slot > 1;
+                     slot -= 1) {
+                    int ring0 = machine.ring(slot), bestRing = ring0;
+                    int bestMove = 0, bestCarry = 0;
+                    double best = 0;
+                    for (int trial = 0; trial < TRIAL_MOVES * _alphabet.size();
+                         trial += 1) {
+                        if (trial == TRIAL_MOVES / 2) {
+                            continue;
+                        }
+                        int ring = (ring0 + trial / TRIAL_MOVES)
+                            % _alphabet.size();
+                        int move = trial % TRIAL_MOVES / 3 - 1,
+                            carry = trial % 3 - 1;
+                        Machine m = machine.copy();
+                        m.shiftRing(slot, ring);
+                        move(m, slot, move);
+                        move(m, slot - 1, carry);
+                        double delta = tryKey(m);
+                        if (delta > best) {
+                            best = delta;
+                            bestRing = ring;
+                            bestMove = move;
+                            bestCarry = carry;
+                        }
+                    }
+                    if (best > 0) {
+                        machine.shiftRing(slot, bestRing);
+                        move(machine, slot, bestMove);
+                        move(machine, slot - 1, bestCarry);
+                        score = decryptBase(machine);
+                        improved = true;
+                    }
+                }
+            }
+            char[] setting = new char[last], rings = new char[last];
+            for (int i = 0; i < last; i += 1) {
+                setting[i] = _alphabet.toChar(machine.setting(i + 1));
+                rings[i] = _alphabet.toChar(machine.ring(i + 1));
+            }
+            return new Key(rotors, new String(setting), new String(rings),
+                           score);
+        }
+
+        /** Move the rotor in SLOT of MACHINE DELTA positions, leaving the
+         *  others where they are.  A reflector is not moved. */
+        private void move(Machine machine, int slot, int delta) {
+            if (delta == 0 || machine.reflecting(slot)) {
+                return;
+            }
+            int[] setting = settings(machine);
+            setting[slot - 1] =
+                Math.floorMod(setting[slot - 1] + delta, _alphabet.size());
+            machine.setRotors(setting);
+        }
+
+        /** Return the settings of MACHINE, as for setRotors, in _setting. */
+        private int[] settings(Machine machine) {
+            for (int i = 0; i < _setting.length; i += 1) {
+                _setting[i] = machine.setting(i + 1);
+            }
+            return _setting;
+        }
+
+        /** Decrypt the message with a copy of MACHINE into _base,
+         *  recording the offsets of the rotors at each keypress in
+         *  _offsets, and return its score. */
+        private double decryptBase(Machine machine) {
+            Machine base = machine.copy();
+            int last = base.numRotors() - 1;
+            for (int k = 0; k < _cipher.length; k += 1) {
+                base.step();
+                for (int slot = 1; slot <= last; slot += 1) {
+                    _offsets[k * last + slot - 1] = base.offset(slot);
+                }
+                _base[k] = base.substitute(_cipher[k]);
+            }
+            System.arraycopy(_base, 0, _trial, 0, _base.length);
+            return _fitness.score(_base, 0, _base.length);
+        }
+
+        /** Return the change in score from _base to the decryption by
+         *  MACHINE, which differs from the base key only in when rotors
+         *  carry, substituting only where its offsets differ. */
+        private double tryKey(Machine machine) {
+            int last = machine.numRotors() - 1, count = 0;
+            for (int k = 0; k < _cipher.length; k += 1) {
+                machine.step();
+                boolean same = true;
+                for (int slot = 1; slot <= last && same; slot += 1) {
+                    same = _offsets[k * last + slot - 1]
+                        == machine.offset(slot);
+                }
+                if (!same) {
+                    _trial[k] = machine.substitute(_cipher[k]);
+                    _changed[count] = k;
+                    count += 1;
+                }
+            }
+            int n = _fitness.length(), next = 0;
+            double delta = 0;
+            for (int i = 0; i < count; i += 1) {
+                int p = _changed[i];
+                int from = Math.max(next, p - n + 1),
+                    to = Math.min(p, _cipher.length - n);
+                for (int w = from; w <= to; w += 1) {
+                    delta += _fitness.score(_trial, w, n)
+                        - _fitness.score(_base, w, n);
+                }
+                next = Math.max(next, to + 1);
+            }
+            for (int i = 0; i < count; i += 1) {
+                _trial[_changed[i]] = _base[_changed[i]];
+            }
+            return delta;
+        }
+
+        /** Decryption by the untried key. */
+        private final int[] _base;
+
+        /** Decryption by the key being tried; equal to _base between
+         *  trials. */
+        private final int[] _trial;
+
+        /** Keypresses at which the current trial differs from _base. */
+        private final int[] _changed;
+
+        /** Settings of the machine being tried. */
+        private int[] _setting;
+
+        /** Offset of the rotor in slot S + 1 at keypress K of the untried
+         *  key is _offsets[K * (number of slots - 1) + S]. */
+        private int[] _offsets;
+    }
+
+    /** Orders keys best first. */
+    private static final Comparator<Key> BY_SCORE = new Comparator<Key>() {
+        @Override
+        public int compare(Key a, Key b) {
+            return Double.compare(b.score(), a.score());
+        }
+    };
+
+    /** Number of ways each trial ring is tried: with the rotor itself,
+     *  and the one to its left, each moved by -1, 0 or 1. */
+    private static final int TRIAL_MOVES = 9;
+
+    /** Most passes over the right and middle rings; each pass tries
+     *  every ring of each, keeping the best. */
+    private static final int MAX_PASSES = 4;
+
+    /** Machine (catalog, rings and plugboard) whose keys I complete. */
+    private final Machine _machine;
+
+    /** Its alphabet. */
+    private final Alphabet _alphabet;
+
+    /** Statistics that score decryptions. */
+    private final NGrams _fitness;
+
+    /** The message, as indices. */
+    private final int[] _cipher;
+}
@@ -0,0 +1,82 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the RingSearch class.
+ *  @author Daric Lim
+ */
+public class RingSearchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** Rotors of the test messages. */
+    private static final String[] ROTORS = { "B", "III", "IV", "I" };
+
+    /** Plugboard of the test messages. */
+    private static final String PLUGS = "(AQ) (BF) (HR) (MZ) (TX)";
+
+    /** Return the key recovered, by a KeySearch assuming rings AAA and
+     *  then a RingSearch, for CIPHERTEXT, scored with trigrams of
+     *  ENGLISH. */
+    private RingSearch.Key recover(String ciphertext) throws IOException {
+        Machine search = navalMachine(ROTORS, PLUGS);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        List<KeySearch.Candidate> candidates =
+            new KeySearch(search, new String[][] { ROTORS }, ciphertext)
+            .best(CANDIDATES, pool);
+        NGrams fitness =
+            NGrams.fromText(new StringReader(ENGLISH), UPPER, 3);
+        return new RingSearch(search, ciphertext, fitness)
+            .recover(candidates, pool).get(0);
+    }
+
+    /** Check that a message encrypted with RINGS and SETTING decrypts
+     *  with the key recovered from it. */
+    private void checkRoundTrip(String rings, String setting)
+        throws IOException {
+        Machine machine = navalMachine(ROTORS, PLUGS);
+        machine.setRings(rings);
+        machine.setRotors(setting);
+        String ciphertext = machine.convert(ENGLISH);
+        RingSearch.Key key = recover(ciphertext);
+        Machine decrypt = navalMachine(ROTORS, PLUGS);
+        key.apply(decrypt);
+        assertEquals(msg("roundTrip", "rings %s, setting %s, found %s",
+                         rings, setting, key),
+                     ENGLISH, decrypt.convert(ciphertext));
+    }
+
+    @Test
+    public void roundTripTest() throws IOException {
+        checkRoundTrip("ALM", "QEV");
+        checkRoundTrip("AZC", "DJU");
+    }
+
+    @Test
+    public void applySetsRingsFirstTest() {
+        RingSearch.Key key =
+            new RingSearch.Key(ROTORS, "QEV", "ALM", 0);
+        Machine expected = navalMachine(ROTORS, PLUGS);
+        expected.setRings("ALM");
+        expected.setRotors("QEV");
+        Machine applied = navalMachine(ROTORS, PLUGS);
+        key.apply(applied);
+        assertEquals(expected.convert(ENGLISH), applied.convert(ENGLISH));
+        assertEquals(ROTORS.length - 1, key.setting().length());
+    }
+
+    /** Number of key search candidates whose rings are tried. */
+    private static final int CANDIDATES = 5;
+}
@@ -13,6 +13,8 @@ class Rotor {
         _permutation = perm;
         _setting = 0;
         _ring = 0;
+        _forwardTable = perm.wiring(false);
+        _backwardTable = perm.wiring(true);
     }
 
     /** Return my name. */
@@ -20,6 +22,21 @@ class Rotor {
         return _name;
     }
 
+    /** Return an immutable description of me (name, permutation,
+     *  notches and kind) without my setting or ring. */
+    RotorSpec spec() {
+        StringBuilder notches = new StringBuilder();
+        for (int p = 0; p < size(); p += 1) {
+            if (notchAt(p)) {
+                notches.append(alphabet().toChar(p));
+            }
+        }
+        RotorSpec.Kind kind =
+            reflecting() ? RotorSpec.Kind.REFLECTOR
+            : rotates() ? RotorSpec.Kind.MOVING : RotorSpec.Kind.FIXED;
+        return new RotorSpec(_name, _permutation, notches.toString(), kind);
+    }
+
     /** Return my alphabet. */
     Alphabet alphabet() {
         return _permutation.alphabet();
@@ -53,6 +70,7 @@ class Rotor {
     /** Set setting() to POSN.  */
     void set(int posn) {
         _setting = permutation().wrap(posn - _ring);
+        updateOffset();
     }
 
     /** Set setting() to character CPOSN. */
@@ -63,20 +81,24 @@ class Rotor {
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
-        return _permutation.wrap(_permutation.permute(
-                p + (setting() - getRing())) - (setting() - getRing()));
+        return _forwardTable.get(_offset, p);
     }
 
     /** Return the conversion of E (an integer in the range 0..size()-1)
      *  according to the inverse of my permutation. */
     int convertBackward(int e) {
-        return _permutation.wrap(_permutation.invert(
-                e + (setting() - getRing())) - (setting() - getRing()));
+        return _backwardTable.get(_offset, e);
     }
 
     /** Returns true iff I am positioned to allow the rotor to my left
      *  to advance. */
     boolean atNotch() {
+        return notchAt(setting());
+    }
+
+    /** Returns true iff I would allow the rotor to my left to advance
+     *  if my setting were POSN.  By default, never. */
+    boolean notchAt(int posn) {
         return false;
     }
 
@@ -91,10 +113,27 @@ class Rotor {
 
     /** Set the RING of the rotor. */
     void setRing(int ring) {
-        if (ring >= size()) {
+        if (ring < 0 || ring >= size()) {
             throw error("Invalid ring for alphabet size");
         }
         _ring = ring;
+        updateOffset();
+    }
+
+    /** Recompute _offset, setting() - getRing() wrapped into
+     *  0..size()-1.  Both terms are already in range, so a negative
+     *  difference only needs size() added back, which the sign mask
+     *  does without a branch or a division. */
+    private void updateOffset() {
+        int d = _setting - _ring;
+        _offset = d + ((d >> 31) & size());
+    }
+
+    /** Return the number of bytes my wiring tables currently occupy.
+     *  The tables belong to my permutation, so rotors that share an
+     *  (interned) permutation also share this storage. */
+    long tableBytes() {
+        return _forwardTable.bytes() + _backwardTable.bytes();
     }
 
     @Override
@@ -113,4 +152,14 @@ class Rotor {
 
     /** Integer representing position of ring based on alphabet. */
     private int _ring;
+
+    /** setting() - getRing(), modulo size(): the row of the tables
+     *  below that describes my current wiring. */
+    private int _offset;
+
+    /** Entry (K, P) is convertForward(P) when my offset is K. */
+    private final WiringTable _forwardTable;
+
+    /** Entry (K, E) is convertBackward(E) when my offset is K. */
+    private final WiringTable _backwardTable;
 }
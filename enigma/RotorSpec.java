@@ -0,0 +1,155 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** An immutable description of a rotor: its name, its wiring in the 0
+ *  position, its notches and its kind.  Unlike a Rotor, a RotorSpec has
+ *  no setting or ring, so one catalog of specs can be shared by any
+ *  number of Machines, on any number of threads; each Machine keeps the
+ *  settings and rings of its own slots.
+ *  @author Daric Lim
+ */
+final class RotorSpec {
+
+    /** The kinds of rotor. */
+    enum Kind {
+        /** A rotor with a ratchet, which advances. */
+        MOVING,
+        /** A rotor that never advances. */
+        FIXED,
+        /** A fixed rotor that reflects; its wiring must be a
+         *  derangement. */
+        REFLECTOR
+    }
+
+    /** A rotor of kind KIND named NAME, with wiring WIRING in its 0
+     *  position and notches at the characters in NOTCHES (which must be
+     *  empty unless KIND is MOVING). */
+    RotorSpec(String name, Permutation wiring, String notches, Kind kind) {
+        if (kind == Kind.REFLECTOR && !wiring.derangement()) {
+            throw error("Reflectors must have deranged permutation");
+        }
+        if (kind != Kind.MOVING && notches.length() > 0) {
+            throw error("Only moving rotors have notches");
+        }
+        _name = name;
+        _wiring = wiring.intern();
+        _kind = kind;
+        _notches = new boolean[wiring.size()];
+        for (int i = 0; i < notches.length(); i += 1) {
+            _notches[wiring.alphabet().toInt(notches.charAt(i))] = true;
+        }
+        int size = _notches.length;
+        _notchesBelow = new int[size + 1];
+        for (int p = 0; p < size; p += 1) {
+            _notchesBelow[p + 1] = _notchesBelow[p] + (_notches[p] ? 1 : 0);
+        }
+        _notchList = new int[_notchesBelow[size]];
+        for (int p = 0; p < size; p += 1) {
+            if (_notches[p]) {
+                _notchList[_notchesBelow[p]] = p;
+            }
+        }
+        _toNotch = new int[size];
+        for (int p = 0; p < size; p += 1) {
+            int k = _notchesBelow[p];
+            _toNotch[p] = _notchList.length == 0 ? -1
+                : k < _notchList.length ? _notchList[k] - p
+                : _notchList[0] + size - p;
+        }
+        _forward = _wiring.wiring(false);
+        _backward = _wiring.wiring(true);
+    }
+
+    /** Return my name. */
+    String name() {
+        return _name;
+    }
+
+    /** Return my wiring in the 0 position. */
+    Permutation wiring() {
+        return _wiring;
+    }
+
+    /** Return my kind. */
+    Kind kind() {
+        return _kind;
+    }
+
+    /** Return true iff I have a ratchet and can move. */
+    boolean rotates() {
+        return _kind == Kind.MOVING;
+    }
+
+    /** Return true iff I reflect. */
+    boolean reflecting() {
+        return _kind == Kind.REFLECTOR;
+    }
+
+    /** Return true iff I am at a notch when my setting is POSN (in
+     *  0..size-1). */
+    boolean notchAt(int posn) {
+        return _notches[posn];
+    }
+
+    /** Return the number of advances that take me from setting POSN (in
+     *  0..size-1) to a notch: 0 if POSN is a notch, and -1 if I have
+     *  none. */
+    int toNotch(int posn) {
+        return _toNotch[posn];
+    }
+
+    /** Return the number of my notches. */
+    int numNotches() {
+        return _notchList.length;
+    }
+
+    /** Return my Kth notch, counting from 0 in increasing order of
+     *  position. */
+    int notch(int k) {
+        return _notchList[k];
+    }
+
+    /** Return the number of my notches at positions less than POSN (in
+     *  0..size). */
+    int notchesBelow(int posn) {
+        return _notchesBelow[posn];
+    }
+
+    /** Return my wiring at every offset (setting - ring), forward. */
+    WiringTable forward() {
+        return _forward;
+    }
+
+    /** Return my wiring at every offset (setting - ring), backward. */
+    WiringTable backward() {
+        return _backward;
+    }
+
+    @Override
+    public String toString() {
+        return "RotorSpec " + _name;
+    }
+
+    /** My name. */
+    private final String _name;
+
+    /** My (interned) wiring in the 0 position. */
+    private final Permutation _wiring;
+
+    /** My kind. */
+    private final Kind _kind;
+
+    /** _notches[P] is true iff position P is a notch. */
+    private final boolean[] _notches;
+
+    /** My notches, in increasing order. */
+    private final int[] _notchList;
+
+    /** _notchesBelow[P] is notchesBelow(P), and _toNotch[P] is
+     *  toNotch(P). */
+    private final int[] _notchesBelow, _toNotch;
+
+    /** Tables of my wiring at each offset. */
+    private final WiringTable _forward, _backward;
+}
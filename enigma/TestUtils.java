@@ -1,6 +1,8 @@
 package enigma;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Random;
 
 /** Utility definitions for use in unit tests.
  *  @author P. N. Hilfinger
@@ -126,4 +128,122 @@ class TestUtils {
         NAVALZ_MAP.put("Gamma", "EGTPLBOVFSINCUJZDXMRQAYWHK");
     }
 
+    /** The notches of the naval moving rotors. */
+    static final HashMap<String, String> NAVAL_NOTCHES = new HashMap<>();
+    static {
+        NAVAL_NOTCHES.put("I", "Q");
+        NAVAL_NOTCHES.put("II", "E");
+        NAVAL_NOTCHES.put("III", "V");
+        NAVAL_NOTCHES.put("IV", "J");
+        NAVAL_NOTCHES.put("V", "Z");
+        NAVAL_NOTCHES.put("VI", "ZM");
+        NAVAL_NOTCHES.put("VII", "ZM");
+        NAVAL_NOTCHES.put("VIII", "ZM");
+    }
+
+    /** Return new naval rotors (moving rotors I-VIII, fixed rotors Beta
+     *  and Gamma, and reflectors B and C) in their A settings. */
+    static ArrayList<Rotor> navalRotors() {
+        ArrayList<Rotor> result = new ArrayList<>();
+        for (String name : NAVALA.keySet()) {
+            Permutation perm = new Permutation(NAVALA.get(name), UPPER);
+            if (NAVAL_NOTCHES.containsKey(name)) {
+                result.add(new MovingRotor(name, perm,
+                                           NAVAL_NOTCHES.get(name)));
+            } else if (name.equals("B") || name.equals("C")) {
+                result.add(new Reflector(name, perm));
+            } else {
+                result.add(new FixedRotor(name, perm));
+            }
+        }
+        return result;
+    }
+
+    /** Return a naval machine with rotors ROTORS (reflector first, as for
+     *  Machine.insertRotors), one pawl per moving rotor, and plugboard
+     *  PLUGBOARD in cycle notation. */
+    static Machine navalMachine(String[] rotors, String plugboard) {
+        int pawls = 0;
+        for (String name : rotors) {
+            if (NAVAL_NOTCHES.containsKey(name)) {
+                pawls += 1;
+            }
+        }
+        Machine result =
+            new Machine(UPPER, rotors.length, pawls, navalRotors());
+        result.insertRotors(rotors);
+        result.setPlugboard(new Permutation(plugboard, UPPER));
+        return result;
+    }
+
+    /** Some English, as capital letters only. */
+    static final String ENGLISH =
+        ("It was the best of times, it was the worst of times, it was the "
+         + "age of wisdom, it was the age of foolishness, it was the epoch "
+         + "of belief, it was the epoch of incredulity, it was the season "
+         + "of Light, it was the season of Darkness, it was the spring of "
+         + "hope, it was the winter of despair, we had everything before "
+         + "us, we had nothing before us, we were all going direct to "
+         + "Heaven, we were all going direct the other way; in short, the "
+         + "period was so far like the present period, that some of its "
+         + "noisiest authorities insisted on its being received, for good "
+         + "or for evil, in the superlative degree of comparison only.  "
+         + "There were a king with a large jaw and a queen with a plain "
+         + "face, on the throne of England; there were a king with a large "
+         + "jaw and a queen with a fair face, on the throne of France.")
+        .toUpperCase().replaceAll("[^A-Z]", "");
+
+    /** Return a machine over ALPHA (whose size must be even) with a
+     *  reflector and MOVING moving rotors, each with NOTCHES notches, an
+     *  empty plugboard, and wirings, notches and settings drawn from
+     *  SEED. */
+    static Machine randomMachine(Alphabet alpha, int moving, int notches,
+                                 long seed) {
+        Random random = new Random(seed);
+        int size = alpha.size();
+        RotorSpec[] catalog = new RotorSpec[moving + 1];
+        String[] names = new String[moving + 1];
+        int[] pairs = shuffled(size, random), reflector = new int[size];
+        for (int i = 0; i < size; i += 2) {
+            reflector[pairs[i]] = pairs[i + 1];
+            reflector[pairs[i + 1]] = pairs[i];
+        }
+        names[0] = "R";
+        catalog[0] = new RotorSpec("R", new Permutation(reflector, alpha), "",
+                                   RotorSpec.Kind.REFLECTOR);
+        for (int k = 1; k <= moving; k += 1) {
+            int[] notchPosns = shuffled(size, random);
+            char[] chars = new char[notches];
+            for (int i = 0; i < notches; i += 1) {
+                chars[i] = alpha.toChar(notchPosns[i]);
+            }
+            names[k] = "M" + k;
+            catalog[k] = new RotorSpec(names[k],
+                                       new Permutation(shuffled(size, random),
+                                                       alpha),
+                                       new String(chars),
+                                       RotorSpec.Kind.MOVING);
+        }
+        Machine result = new Machine(alpha, moving + 1, moving, catalog);
+        result.insertRotors(names);
+        result.setPlugboard(new Permutation("", alpha));
+        int[] setting = new int[moving];
+        for (int i = 0; i < moving; i += 1) {
+            setting[i] = random.nextInt(size);
+        }
+        result.setRotors(setting);
+        return result;
+    }
+
+    /** Return 0 .. N-1 in an order drawn from RANDOM. */
+    static int[] shuffled(int n, Random random) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            int j = random.nextInt(i + 1);
+            result[i] = result[j];
+            result[j] = i;
+        }
+        return result;
+    }
+
 }
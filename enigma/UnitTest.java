@@ -0,0 +1,29 @@
+package enigma;
+
+import ucb.junit.textui;
+
+/** The suite of all JUnit tests for the enigma package.
+ *  @author Daric Lim
+ */
+public class UnitTest {
+
+    /** Run the JUnit tests in this package. Add xxxTest.class entries to
+     *  the arguments of runClasses to run other JUnit tests. */
+    public static void main(String[] ignored) {
+        System.exit(textui.runClasses(AlphabetTest.class,
+                                      PermutationTest.class,
+                                      PermutationParseTest.class,
+                                      PermutationAlgebraTest.class,
+                                      PermutationCycleTest.class,
+                                      MovingRotorTest.class,
+                                      PermuteAllTest.class,
+                                      MachineTest.class,
+                                      CompiledMachineTest.class,
+                                      EnigmaStreamTest.class,
+                                      NGramsTest.class,
+                                      KeySearchTest.class,
+                                      BombeTest.class,
+                                      PlugboardSolverTest.class,
+                                      RingSearchTest.class));
+    }
+}
@@ -0,0 +1,82 @@
+package enigma;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static enigma.EnigmaException.*;
+
+/** Vector API implementations of Permutation.permuteAll.  Compiled only
+ *  by 'make vector', and loaded (see Permutation.VECTOR) only when the
+ *  jdk.incubator.vector module is present at run time; Permutation falls
+ *  back to scalar loops otherwise.
+ *  @author Daric Lim
+ */
+class VectorPermute implements Permutation.Bulk {
+
+    /** Byte indices are looked up in registers, a vector of table entries
+     *  at a time, and blended by their high bits. */
+    @Override
+    public void permuteAll(byte[] table, int size, byte[] in, byte[] out) {
+        int lanes = BYTES.length();
+        int chunks = (size + lanes - 1) / lanes;
+        ByteVector[] parts = new ByteVector[chunks];
+        for (int k = 0; k < chunks; k += 1) {
+            parts[k] = ByteVector.fromArray(BYTES, table, k * lanes);
+        }
+        int shift = Integer.numberOfTrailingZeros(lanes);
+        byte low = (byte) (lanes - 1);
+        int bound = BYTES.loopBound(in.length);
+        int i;
+        for (i = 0; i < bound; i += lanes) {
+            ByteVector v = ByteVector.fromArray(BYTES, in, i);
+            if (size < Alphabet.BYTE_SIZE
+                && v.compare(VectorOperators.UNSIGNED_GE, (byte) size)
+                    .anyTrue()) {
+                throw error("Index out of range for permutation");
+            }
+            ByteVector lo = v.and(low);
+            ByteVector result = lo.selectFrom(parts[0]);
+            if (chunks > 1) {
+                ByteVector hi = v.lanewise(VectorOperators.LSHR, shift);
+                for (int k = 1; k < chunks; k += 1) {
+                    VectorMask<Byte> mine = hi.eq((byte) k);
+                    result = result.blend(lo.selectFrom(parts[k]), mine);
+                }
+            }
+            result.intoArray(out, i);
+        }
+        for (; i < in.length; i += 1) {
+            int p = in[i] & BYTE_MASK;
+            if (p >= size) {
+                throw error("Index out of range for permutation");
+            }
+            out[i] = table[p];
+        }
+    }
+
+    /** Entries are gathered a vector at a time. */
+    @Override
+    public void permuteAll(int[] table, int[] in, int[] out) {
+        int lanes = INTS.length();
+        int bound = INTS.loopBound(in.length);
+        int i;
+        for (i = 0; i < bound; i += lanes) {
+            IntVector.fromArray(INTS, table, 0, in, i).intoArray(out, i);
+        }
+        for (; i < in.length; i += 1) {
+            out[i] = table[in[i]];
+        }
+    }
+
+    /** Vector shapes used, the widest the platform supports. */
+    private static final VectorSpecies<Byte> BYTES =
+        ByteVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS =
+        IntVector.SPECIES_PREFERRED;
+
+    /** Mask that turns a byte into its unsigned value. */
+    private static final int BYTE_MASK = 0xFF;
+}
@@ -0,0 +1,123 @@
+package enigma;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/** The wiring of a rotor at each of its offsets (setting - ring), in one
+ *  direction.  Entries are stored at the narrowest width that holds an
+ *  index of the alphabet.  Alphabets of up to 256 symbols get an eager
+ *  byte table of size x size entries.  Larger alphabets would need
+ *  megabytes per rotor, so their rows are built on first use, as 16-bit
+ *  (Alphabet.MAX_SIZE bounds every index) rows, until a fixed budget is
+ *  spent; offsets without a row are computed from the permutation.
+ *  @author Daric Lim
+ */
+class WiringTable {
+
+    /** A table of the wiring of PERM at every offset, or of its inverse
+     *  if INVERSE. */
+    WiringTable(Permutation perm, boolean inverse) {
+        _perm = perm;
+        _inverse = inverse;
+        _size = perm.size();
+        if (_size <= BYTE_LIMIT) {
+            _bytes = new byte[_size * _size];
+            for (int offset = 0; offset < _size; offset += 1) {
+                for (int p = 0; p < _size; p += 1) {
+                    _bytes[offset * _size + p] = (byte) compute(offset, p);
+                }
+            }
+            _rows = null;
+            _rowsLeft = 0;
+        } else {
+            _bytes = null;
+            _rows = new AtomicReferenceArray<>(_size);
+            _rowsLeft = (int) Math.min(_size, LAZY_BUDGET / (2L * _size));
+        }
+    }
+
+    /** Return the wiring of P (in 0..size-1) at OFFSET (in 0..size-1). */
+    int get(int offset, int p) {
+        if (_bytes != null) {
+            return _bytes[offset * _size + p] & BYTE_MASK;
+        }
+        short[] row = _rows.get(offset);
+        if (row == null) {
+            row = _rowsLeft > 0 ? buildRow(offset) : null;
+            if (row == null) {
+                return compute(offset, p);
+            }
+        }
+        return row[p] & SHORT_MASK;
+    }
+
+    /** Return the number of bytes of table storage I currently hold. */
+    long bytes() {
+        if (_bytes != null) {
+            return _bytes.length;
+        }
+        long result = 0;
+        for (int i = 0; i < _rows.length(); i += 1) {
+            short[] row = _rows.get(i);
+            if (row != null) {
+                result += 2L * row.length;
+            }
+        }
+        return result;
+    }
+
+    /** Build, store and return the row for OFFSET, or return null if
+     *  the row budget is spent.  Tables are shared between rotors, so
+     *  this may race with other threads; each row is built once. */
+    private synchronized short[] buildRow(int offset) {
+        if (_rows.get(offset) != null) {
+            return _rows.get(offset);
+        }
+        if (_rowsLeft == 0) {
+            return null;
+        }
+        _rowsLeft -= 1;
+        short[] row = new short[_size];
+        for (int p = 0; p < _size; p += 1) {
+            row[p] = (short) compute(offset, p);
+        }
+        _rows.set(offset, row);
+        return row;
+    }
+
+    /** Return the wiring of P at OFFSET, computed from the permutation. */
+    private int compute(int offset, int p) {
+        int x = _inverse
+            ? _perm.invert(p + offset) : _perm.permute(p + offset);
+        int d = x - offset;
+        return d + ((d >> 31) & _size);
+    }
+
+    /** Largest alphabet whose table is stored eagerly as bytes. */
+    static final int BYTE_LIMIT = 256;
+
+    /** Most bytes of lazily built rows a single table may hold. */
+    static final long LAZY_BUDGET = 1 << 20;
+
+    /** Masks that read a stored entry back as an unsigned index. */
+    private static final int BYTE_MASK = 0xFF, SHORT_MASK = 0xFFFF;
+
+    /** The permutation whose wiring I tabulate. */
+    private final Permutation _perm;
+
+    /** True iff I tabulate the inverse of _perm. */
+    private final boolean _inverse;
+
+    /** Size of the alphabet of _perm. */
+    private final int _size;
+
+    /** Eager table: entry OFFSET * _size + P is the wiring of P at
+     *  OFFSET.  Null for large alphabets. */
+    private final byte[] _bytes;
+
+    /** Lazily built rows, indexed by offset, for large alphabets. */
+    private final AtomicReferenceArray<short[]> _rows;
+
+    /** Number of rows that may still be built.  Read without the lock, so
+     *  that lookups stop taking it once the budget is spent. */
+    private volatile int _rowsLeft;
+}